@@ -2,7 +2,9 @@ package com.example.multiaccount;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.core.Binding;
@@ -10,7 +12,9 @@ import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 
-@SpringBootApplication
+// R2DBC is only used privately by ReactiveItemRepository; a ConnectionFactory bean would displace the JDBC DataSource
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@EnableScheduling
 public class MultiAccountApplication {
 
     public static void main(String[] args) {
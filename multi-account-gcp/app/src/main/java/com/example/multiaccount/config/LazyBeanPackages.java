@@ -0,0 +1,53 @@
+package com.example.multiaccount.config;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.MethodMetadata;
+
+import java.util.List;
+
+/**
+ * Makes every bean declared under one of the startup.lazy-packages lazy, so
+ * it is created on first use instead of at startup. Meant for beans no
+ * request path needs, like springdoc's, whose controllers are still mapped
+ * and only instantiated on the first /v3/api-docs or /swagger-ui request.
+ * Beans declared by @Bean methods are matched on the declaring class.
+ */
+public class LazyBeanPackages implements BeanFactoryPostProcessor, EnvironmentAware {
+
+    private List<String> packages = List.of();
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        packages = List.of(environment.getProperty("startup.lazy-packages", String[].class, new String[0]));
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        if (packages.isEmpty()) {
+            return;
+        }
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            String className = declaringClassName(definition);
+            if (className != null && packages.stream().anyMatch(pkg -> className.startsWith(pkg + "."))) {
+                definition.setLazyInit(true);
+            }
+        }
+    }
+
+    private static String declaringClassName(BeanDefinition definition) {
+        if (definition instanceof AnnotatedBeanDefinition annotated) {
+            MethodMetadata factoryMethod = annotated.getFactoryMethodMetadata();
+            if (factoryMethod != null) {
+                return factoryMethod.getDeclaringClassName();
+            }
+        }
+        return definition.getBeanClassName();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.multiaccount.config;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StartupConfig {
+
+    // Static, so the post-processor does not force this configuration class to be created early
+    @Bean
+    public static LazyBeanPackages lazyBeanPackages() {
+        return new LazyBeanPackages();
+    }
+
+    // The AppCDS training run has no database. Under AOT spring.flyway.enabled was settled at build
+    // time, so the run can only be kept from migrating here, at runtime.
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy() {
+        return flyway -> {
+            if (!ExitOnRefresh.requested()) {
+                flyway.migrate();
+            }
+        };
+    }
+}
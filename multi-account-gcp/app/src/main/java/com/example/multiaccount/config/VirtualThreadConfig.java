@@ -0,0 +1,62 @@
+package com.example.multiaccount.config;
+
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Opt-in virtual threads (spring.threads.virtual.enabled=true, Java 21 runtime).
+ *
+ * Tomcat runs every request on a new virtual thread instead of its bounded
+ * worker pool, so requests blocked on Postgres, Redis or a publisher confirm
+ * no longer cap concurrency at server.tomcat.threads.max. MVC async work
+ * (StreamingResponseBody exports) gets virtual threads as well. The code is
+ * built for Java 17, so the virtual thread API is looked up reflectively and
+ * startup fails if the mode is enabled on an older runtime.
+ *
+ * Pool sizes still apply: Hikari's maximum-pool-size and
+ * files.download.max-concurrent now bound those resources directly instead
+ * of the request thread pool doing it implicitly.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        virtualThreadFactory("tomcat-handler-");
+        log.info("Tomcat requests run on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(new VirtualThreadExecutor("tomcat-handler-"));
+    }
+
+    // Replaces Boot's pooled applicationTaskExecutor, which backs MVC async requests
+    @Bean(name = "applicationTaskExecutor")
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new SimpleAsyncTaskExecutor(virtualThreadFactory("mvc-async-"));
+    }
+
+    /** Thread.ofVirtual().name(prefix, 0).factory(), without compiling against Java 21. */
+    static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Method name = builderType.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("spring.threads.virtual.enabled needs a Java 21 runtime, this is Java "
+                    + Runtime.version(), e);
+        }
+    }
+}
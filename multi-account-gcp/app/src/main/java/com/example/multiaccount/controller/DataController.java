@@ -1,13 +1,30 @@
 package com.example.multiaccount.controller;
 
 import com.example.multiaccount.model.Item;
+import com.example.multiaccount.model.UploadedFile;
 import com.example.multiaccount.repo.ItemRepository;
+import com.example.multiaccount.repo.UploadedFileRepository;
+import com.example.multiaccount.service.ItemExportService;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.api.async.RedisKeyAsyncCommands;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -16,49 +33,133 @@ import java.util.concurrent.TimeUnit;
 public class DataController {
 
     private static final Logger log = LoggerFactory.getLogger(DataController.class);
+    private static final String ITEM_KEY_PATTERN = "item:*";
+    private static final int MAX_PAGE_SIZE = 1000;
 
     @Autowired
     private ItemRepository itemRepository;
 
+    @Autowired
+    private ItemExportService itemExportService;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
     @Autowired(required = false)
     private RedisTemplate<String, Object> redisTemplate;
 
+    /**
+     * One keyset page of items ordered by id. Pass the returned nextAfterId as
+     * afterId to get the next page; it is null once the table is exhausted.
+     */
     @GetMapping("/sql")
-    public List<Item> getSqlData() {
+    public Map<String, Object> getSqlData(@RequestParam(defaultValue = "0") long afterId,
+                                          @RequestParam(defaultValue = "100") int limit) {
+        Map<String, Object> page = new HashMap<>();
         try {
-            return itemRepository.findAll();
+            int size = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+            List<Item> items = itemRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, size));
+            page.put("items", items);
+            page.put("nextAfterId", items.size() == size ? items.get(items.size() - 1).getId() : null);
         } catch (Exception e) {
             log.error("Error fetching SQL data", e);
-            return new ArrayList<>();
+            page.put("items", new ArrayList<>());
+            page.put("nextAfterId", null);
+        }
+        return page;
+    }
+
+    /** Streams the whole item table as NDJSON or CSV, optionally gzip-encoded. */
+    @GetMapping("/sql/export")
+    public ResponseEntity<StreamingResponseBody> exportSqlData(@RequestParam(defaultValue = "ndjson") String format,
+                                                               @RequestParam(defaultValue = "false") boolean gzip) {
+        ItemExportService.Format exportFormat;
+        try {
+            exportFormat = ItemExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String filename = "items." + format.toLowerCase(Locale.ROOT);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(exportFormat == ItemExportService.Format.CSV
+                        ? MediaType.parseMediaType("text/csv")
+                        : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
         }
+        return response.body(out -> itemExportService.export(exportFormat, gzip, out));
     }
 
+    /**
+     * One page of cached items. Keys are walked with an incremental SCAN; pass the
+     * returned cursor back to continue, a cursor of "0" means the walk is complete.
+     */
     @GetMapping("/redis")
-    public List<Map<String, Object>> getRedisData() {
+    public Map<String, Object> getRedisData(@RequestParam(defaultValue = "0") String cursor,
+                                            @RequestParam(defaultValue = "100") int count) {
+        Map<String, Object> page = new HashMap<>();
         List<Map<String, Object>> redisData = new ArrayList<>();
+        page.put("entries", redisData);
+        page.put("cursor", "0");
 
         try {
             if (redisTemplate != null) {
-                Set<String> keys = redisTemplate.keys("item:*");
-                if (keys != null) {
-                    for (String key : keys) {
-                        Map<String, Object> entry = new HashMap<>();
-                        entry.put("key", key);
-                        entry.put("value", redisTemplate.opsForValue().get(key));
-                        entry.put("ttl", redisTemplate.getExpire(key, TimeUnit.SECONDS) + "s");
-                        redisData.add(entry);
-                    }
+                KeyScanCursor<byte[]> scan = scanItemKeys(cursor, Math.min(Math.max(count, 1), MAX_PAGE_SIZE));
+                List<String> keys = new ArrayList<>(scan.getKeys().size());
+                for (byte[] key : scan.getKeys()) {
+                    keys.add(new String(key, StandardCharsets.UTF_8));
+                }
+
+                // Values and TTLs for the whole page in a single pipelined round trip
+                List<Object> results = keys.isEmpty() ? List.of() : redisTemplate.executePipelined(valuesWithTtl(keys));
+                for (int i = 0; i < keys.size(); i++) {
+                    Map<String, Object> entry = new HashMap<>();
+                    entry.put("key", keys.get(i));
+                    entry.put("value", results.get(2 * i));
+                    entry.put("ttl", results.get(2 * i + 1) + "s");
+                    redisData.add(entry);
                 }
+                page.put("cursor", scan.isFinished() ? "0" : scan.getCursor());
+                page.put("estimatedKeys", redisTemplate.execute((RedisCallback<Long>) connection -> connection.serverCommands().dbSize()));
             }
         } catch (Exception e) {
             log.error("Error fetching Redis data", e);
         }
 
-        return redisData;
+        return page;
+    }
+
+    private KeyScanCursor<byte[]> scanItemKeys(String cursor, int count) {
+        return redisTemplate.execute((RedisCallback<KeyScanCursor<byte[]>>) connection -> {
+            // Spring Data's scan() always starts from cursor 0, so resume through the native Lettuce API
+            @SuppressWarnings("unchecked")
+            RedisKeyAsyncCommands<byte[], byte[]> commands = (RedisKeyAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+            return LettuceFutures.awaitOrCancel(
+                    commands.scan(ScanCursor.of(cursor), ScanArgs.Builder.matches(ITEM_KEY_PATTERN).limit(count)),
+                    5, TimeUnit.SECONDS);
+        });
+    }
+
+    private static SessionCallback<Object> valuesWithTtl(List<String> keys) {
+        return new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (String key : keys) {
+                    ops.opsForValue().get(key);
+                    ops.getExpire(key, TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        };
     }
 
+    // Newest uploads; /v1/files/list pages through the rest
     @GetMapping("/bucket")
-    public List<Map<String, Object>> getBucketData() {
-        return FileUploadController.getUploadedFiles();
+    public List<UploadedFile> getBucketData() {
+        return uploadedFileRepository.findPage(null, null, null, null, null, 50);
     }
 }
@@ -0,0 +1,213 @@
+package com.example.multiaccount.controller;
+
+import com.example.multiaccount.model.UploadedFile;
+import com.example.multiaccount.service.FileMetadataService;
+import com.example.multiaccount.service.FileStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Serves uploaded files from the configured {@link FileStorage}, looked up
+ * by savedName in the upload metadata.
+ *
+ * For local storage, when Tomcat offers sendfile the body is handed to the connector and goes
+ * from the page cache to the socket without passing through the JVM;
+ * otherwise it is copied with FileChannel.transferTo. Remote backends
+ * are streamed through from a ranged read. Supports a single byte
+ * range (for resumed and parallel downloads), ETag/Last-Modified validation
+ * with 304 responses, and at most files.download.max-concurrent downloads at a
+ * time; the rest get 503 with Retry-After. With sendfile the transfer itself
+ * runs on the connector after the permit is returned, so there the limit
+ * bounds request handling and the connector's max-connections bounds the rest.
+ */
+@RestController
+@RequestMapping("/v1/files")
+public class FileDownloadController {
+
+    private static final Logger log = LoggerFactory.getLogger(FileDownloadController.class);
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final FileStorage storage;
+    private final FileMetadataService fileMetadata;
+    private final Semaphore downloads;
+
+    public FileDownloadController(FileStorage storage, FileMetadataService fileMetadata,
+                                  @Value("${files.download.max-concurrent:64}") int maxConcurrent) {
+        this.storage = storage;
+        this.fileMetadata = fileMetadata;
+        this.downloads = new Semaphore(maxConcurrent);
+    }
+
+    @GetMapping("/{savedName}")
+    public void download(@PathVariable String savedName, HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Optional<UploadedFile> found = fileMetadata.find(savedName);
+        Path file = found.map(f -> storage.localPath(f.getStorageKey())).orElse(null);
+        if (found.isEmpty() || (file != null && !Files.isRegularFile(file))) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        UploadedFile meta = found.get();
+        long size = meta.getSizeBytes();
+        long lastModified = meta.getUploadedAt().toEpochMilli();
+        // Content-addressed uploads have a natural strong validator
+        String etag = meta.getSha256() != null
+                ? "\"" + meta.getSha256() + "\""
+                : "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        long[] range = {0, size - 1};
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        boolean partial = rangeHeader != null && ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified);
+        if (partial) {
+            range = parseRange(rangeHeader, size);
+            if (range == null) {
+                // Multiple ranges are not supported; answer with the whole file
+                partial = false;
+                range = new long[] {0, size - 1};
+            } else if (range.length == 0) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+
+        if (!downloads.tryAcquire()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many concurrent downloads");
+            return;
+        }
+        try {
+            long length = range[1] - range[0] + 1;
+            response.setStatus(partial ? HttpStatus.PARTIAL_CONTENT.value() : HttpStatus.OK.value());
+            response.setContentType(meta.getContentType() != null ? meta.getContentType()
+                    : MediaTypeFactory.getMediaType(meta.getName()).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.inline().filename(meta.getName(), StandardCharsets.UTF_8).build().toString());
+            response.setContentLengthLong(length);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (partial) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + size);
+            }
+            if ("HEAD".equals(request.getMethod()) || length == 0) {
+                return;
+            }
+
+            if (file == null) {
+                // Remote backend: stream the ranged read through
+                try (InputStream in = storage.open(meta.getStorageKey(), range[0], length)) {
+                    StreamUtils.copyRange(in, response.getOutputStream(), 0, length - 1);
+                }
+                return;
+            }
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+                // Tomcat writes the file itself once this method returns
+                request.setAttribute(SENDFILE_FILENAME, file.toString());
+                request.setAttribute(SENDFILE_START, range[0]);
+                request.setAttribute(SENDFILE_END, range[1] + 1);
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                long position = range[0];
+                long end = range[1] + 1;
+                while (position < end) {
+                    position += channel.transferTo(position, end - position, out);
+                }
+            }
+        } catch (IOException e) {
+            // Usually the client went away mid-transfer
+            log.debug("Download of {} aborted: {}", savedName, e.getMessage());
+        } finally {
+            downloads.release();
+        }
+    }
+
+    /**
+     * Parses a single "bytes=" range. Returns null when the header should be
+     * ignored (malformed or multiple ranges) and an empty array when the range
+     * cannot be satisfied.
+     */
+    private static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                if (start >= size) {
+                    return new long[0];
+                }
+                end = dash == spec.length() - 1 ? size - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+                if (end < start) {
+                    return null;
+                }
+            }
+            return size > 0 ? new long[] {start, end} : new long[0];
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // If-Range: the range only applies while the validator still matches, otherwise send the whole file
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+                    == lastModified / 1000 * 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
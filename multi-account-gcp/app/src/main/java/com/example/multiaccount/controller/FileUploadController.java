@@ -1,5 +1,12 @@
 package com.example.multiaccount.controller;
 
+import com.example.multiaccount.model.UploadedFile;
+import com.example.multiaccount.service.ChunkedUploadService;
+import com.example.multiaccount.service.ChunkedUploads;
+import com.example.multiaccount.service.FileMetadataService;
+import com.example.multiaccount.service.S3ChunkedUploadService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.slf4j.Logger;
@@ -7,13 +14,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 
+import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.*;
 
 @RestController
@@ -21,17 +30,16 @@ import java.util.*;
 public class FileUploadController {
 
     private static final Logger log = LoggerFactory.getLogger(FileUploadController.class);
-    private static final String UPLOAD_DIR = "/tmp/uploads";
-    private static final List<Map<String, Object>> uploadedFiles = new ArrayList<>();
 
-    static {
-        try {
-            Files.createDirectories(Paths.get(UPLOAD_DIR));
-            log.info("Upload directory created at: {}", UPLOAD_DIR);
-        } catch (IOException e) {
-            log.error("Failed to create upload directory", e);
-        }
-    }
+    @Autowired
+    private ChunkedUploadService chunkedUploads;
+
+    // Present with storage.backend=s3: chunked sessions any replica can serve
+    @Autowired(required = false)
+    private S3ChunkedUploadService s3ChunkedUploads;
+
+    @Autowired
+    private FileMetadataService fileMetadata;
 
     @PostMapping("/upload")
     public ResponseEntity<Map<String, Object>> uploadFile(@RequestParam("file") MultipartFile file) {
@@ -40,38 +48,24 @@ public class FileUploadController {
                 return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
             }
 
-            // Generate unique filename
             String originalFilename = file.getOriginalFilename();
-            String filename = System.currentTimeMillis() + "_" + originalFilename;
-            Path filepath = Paths.get(UPLOAD_DIR, filename);
-
-            // Save file
-            Files.copy(file.getInputStream(), filepath, StandardCopyOption.REPLACE_EXISTING);
-            
-            // Store metadata
-            Map<String, Object> fileInfo = new HashMap<>();
-            fileInfo.put("name", originalFilename);
-            fileInfo.put("savedName", filename);
-            fileInfo.put("size", formatFileSize(file.getSize()));
-            fileInfo.put("uploadDate", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-            fileInfo.put("path", filepath.toString());
-            fileInfo.put("type", file.getContentType());
-            
-            uploadedFiles.add(0, fileInfo); // Add to beginning of list
-            
-            // Keep only last 50 files
-            if (uploadedFiles.size() > 50) {
-                uploadedFiles.remove(uploadedFiles.size() - 1);
-            }
+            // Copies the upload into staging, hashing it on the way; it is then stored once per content
+            Path staging = chunkedUploads.stagingPath();
+            String sha256 = copyHashing(file, staging);
+            UploadedFile saved = fileMetadata.store(originalFilename, staging, file.getSize(), file.getContentType(), sha256);
 
             log.info("File uploaded successfully: {}", originalFilename);
             
             return ResponseEntity.ok(Map.of(
                 "message", "File uploaded successfully",
                 "filename", originalFilename,
-                "size", formatFileSize(file.getSize())
+                "savedName", saved.getSavedName(),
+                "size", formatFileSize(file.getSize()),
+                "sha256", saved.getSha256()
             ));
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (IOException e) {
             log.error("Error uploading file", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -79,35 +73,168 @@ public class FileUploadController {
         }
     }
 
+    // Chunked, resumable uploads: init, PUT each chunk (in any order, in parallel), then complete
+
+    @PostMapping("/uploads")
+    public ResponseEntity<Map<String, Object>> initUpload(@RequestBody Map<String, Object> request) {
+        try {
+            Object size = request.get("size");
+            Object chunkSize = request.get("chunkSize");
+            if (!(size instanceof Number)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "size is required"));
+            }
+            Map<String, Object> status = sessions().init((String) request.get("filename"),
+                    ((Number) size).longValue(), (String) request.get("contentType"),
+                    chunkSize instanceof Number n ? n.intValue() : null);
+            return ResponseEntity.status(HttpStatus.CREATED).body(status);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error starting chunked upload", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to start upload: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<Map<String, Object>> uploadStatus(@PathVariable String uploadId) {
+        try {
+            return ResponseEntity.ok(sessions().status(uploadId));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Raw chunk bytes in the body; X-Chunk-CRC32C (hex) is optional and checked when present
+    @PutMapping("/uploads/{uploadId}/chunks/{index}")
+    public ResponseEntity<Map<String, Object>> uploadChunk(@PathVariable String uploadId, @PathVariable int index,
+                                                           @RequestHeader(value = "X-Chunk-CRC32C", required = false) String crc32c,
+                                                           HttpServletRequest request) {
+        try {
+            boolean written = sessions().writeChunk(uploadId, index, request.getContentLengthLong(), crc32c,
+                    request.getInputStream());
+            return ResponseEntity.ok(Map.of("index", index, "alreadyReceived", !written));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error writing chunk {} of upload {}", index, uploadId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to write chunk: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<Map<String, Object>> completeUpload(@PathVariable String uploadId,
+                                                              @RequestParam(required = false) String sha256) {
+        try {
+            ChunkedUploads.CompletedUpload upload = sessions().complete(uploadId, sha256);
+            UploadedFile saved = upload.staged() != null
+                    ? fileMetadata.store(upload.originalName(), upload.staged(), upload.size(),
+                            upload.contentType(), upload.sha256())
+                    : fileMetadata.storeStaged(upload.originalName(), upload.stagedKey(), upload.size(),
+                            upload.contentType(), upload.sha256());
+            log.info("File uploaded successfully: {}", upload.originalName());
+
+            return ResponseEntity.ok(Map.of(
+                "message", "File uploaded successfully",
+                "filename", upload.originalName(),
+                "savedName", saved.getSavedName(),
+                "size", formatFileSize(upload.size()),
+                "sha256", saved.getSha256()
+            ));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error completing upload {}", uploadId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to complete upload: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Map<String, String>> abortUpload(@PathVariable String uploadId) {
+        try {
+            sessions().abort(uploadId);
+            return ResponseEntity.ok(Map.of("message", "Upload aborted"));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error aborting upload {}", uploadId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to abort upload"));
+        }
+    }
+
+    /**
+     * One page of uploads, newest first. type is a full content type or just
+     * its first part ("image"); from/to are ISO-8601 instants. Pass the
+     * returned nextCursor back as cursor for the next page.
+     */
     @GetMapping("/list")
-    public List<Map<String, Object>> listFiles() {
-        log.info("Listing {} uploaded files", uploadedFiles.size());
-        return new ArrayList<>(uploadedFiles);
+    public ResponseEntity<Map<String, Object>> listFiles(
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(fileMetadata.list(type, from, to, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
-    
-    // Static method for other controllers to access
-    public static List<Map<String, Object>> getUploadedFiles() {
-        return new ArrayList<>(uploadedFiles);
+
+    @GetMapping("/meta/{savedName}")
+    public ResponseEntity<?> getMetadata(@PathVariable String savedName) {
+        return fileMetadata.find(savedName)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{filename}")
     public ResponseEntity<Map<String, String>> deleteFile(@PathVariable String filename) {
         try {
-            Path filepath = Paths.get(UPLOAD_DIR, filename);
-            Files.deleteIfExists(filepath);
-            
-            // Remove from metadata list
-            uploadedFiles.removeIf(file -> filename.equals(file.get("savedName")));
-            
+            if (!fileMetadata.delete(filename)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "File not found"));
+            }
+
             log.info("File deleted: {}", filename);
             return ResponseEntity.ok(Map.of("message", "File deleted successfully"));
-        } catch (IOException e) {
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
             log.error("Error deleting file", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", "Failed to delete file"));
         }
     }
 
+    private ChunkedUploads sessions() {
+        return s3ChunkedUploads != null ? s3ChunkedUploads : chunkedUploads;
+    }
+
+    private static String copyHashing(MultipartFile file, Path target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, target);
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
     private String formatFileSize(long size) {
         if (size < 1024) return size + " B";
         if (size < 1024 * 1024) return String.format("%.2f KB", size / 1024.0);
@@ -1,42 +1,127 @@
 package com.example.multiaccount.controller;
 
 import com.example.multiaccount.model.Item;
+import com.example.multiaccount.repo.ItemRepositoryCustom;
+import com.example.multiaccount.service.CacheWarmup;
 import com.example.multiaccount.service.ItemService;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/v1/items")
 public class ItemController {
 
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+
     private final ItemService service;
+    private final CacheWarmup cacheWarmup;
 
-    public ItemController(ItemService service) {
+    public ItemController(ItemService service, CacheWarmup cacheWarmup) {
         this.service = service;
+        this.cacheWarmup = cacheWarmup;
     }
 
+    // Ids are assigned on insert; changing an existing item goes through PUT /v1/items/{id}
     @PostMapping
-    public ResponseEntity<Item> create(@RequestBody Item item) {
+    public ResponseEntity<?> create(@RequestBody Item item) {
+        if (item.getId() != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "id is assigned by the server"));
+        }
         Item saved = service.create(item);
         return ResponseEntity.created(URI.create("/v1/items/" + saved.getId())).body(saved);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<?> createBatch(@RequestBody List<Item> items) {
+        if (items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (items.stream().anyMatch(item -> item.getId() != null)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "id is assigned by the server"));
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(service.createAll(items));
+    }
+
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<Item>> getMany(@RequestParam List<Long> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(service.getAll(ids));
+    }
+
+    /**
+     * Ranked full-text search over name and description. Pass the returned
+     * nextCursor as cursor to get the next page; it is null on the last page.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> search(@RequestParam String q,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(defaultValue = "20") int limit) {
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "q must not be blank"));
+        }
+        ItemService.SearchCursor after;
+        try {
+            after = cursor != null ? ItemService.SearchCursor.decode(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+        }
+        int size = Math.min(Math.max(limit, 1), MAX_SEARCH_PAGE_SIZE);
+        List<ItemRepositoryCustom.SearchHit> hits = service.search(q, after, size);
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", hits.stream().map(ItemRepositoryCustom.SearchHit::item).toList());
+        page.put("nextCursor", hits.size() == size
+                ? ItemService.SearchCursor.after(hits.get(hits.size() - 1)).encode() : null);
+        return ResponseEntity.ok(page);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Item> get(@PathVariable Long id) {
         return service.get(id)
-                .map(ResponseEntity::ok)
+                .map(ItemController::withETag)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // If-Match: "<version>" (the ETag from GET) makes the update conditional; * only requires the item to exist
     @PutMapping("/{id}")
-    public ResponseEntity<Item> update(@PathVariable Long id, @RequestBody Item item) {
-        return ResponseEntity.ok(service.update(id, item));
+    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody Item item,
+                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = null;
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            expectedVersion = parseETag(ifMatch.trim());
+            if (expectedVersion == null) {
+                // Weak or foreign tags never strongly match an item version
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                        .body(Map.of("error", "If-Match must be a version ETag returned by this API"));
+            }
+        }
+        try {
+            return withETag(service.update(id, item, expectedVersion));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Item " + id + " not found"));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(Map.of("error", e.getMessage()));
+        }
     }
 
+    // Not ready until the Redis warm-up has loaded enough items, see CacheWarmup
     @GetMapping("/health/ready")
     public ResponseEntity<String> ready() {
+        if (!cacheWarmup.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("warming up");
+        }
         return ResponseEntity.ok("ready");
     }
 
@@ -44,4 +129,22 @@ public class ItemController {
     public ResponseEntity<String> info() {
         return ResponseEntity.ok("backend v0.0.1");
     }
+
+    private static ResponseEntity<Item> withETag(Item item) {
+        if (item.getVersion() == null) {
+            return ResponseEntity.ok(item);
+        }
+        return ResponseEntity.ok().eTag("\"" + item.getVersion() + "\"").body(item);
+    }
+
+    private static Long parseETag(String tag) {
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            return null;
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,43 @@
+package com.example.multiaccount.controller;
+
+import com.example.multiaccount.model.Item;
+import com.example.multiaccount.service.ReactiveItemService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking item reads. Spring MVC runs Mono results as async requests,
+ * so the servlet thread goes back to Tomcat while Redis or Postgres answer
+ * and in-flight reads are bounded by server.tomcat.max-connections instead of
+ * the request thread pool.
+ */
+@RestController
+@RequestMapping("/v2/items")
+public class ReactiveItemController {
+
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final ReactiveItemService service;
+
+    public ReactiveItemController(ReactiveItemService service) {
+        this.service = service;
+    }
+
+    @GetMapping(params = "ids")
+    public Mono<ResponseEntity<List<Item>>> getMany(@RequestParam List<Long> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return service.getAll(ids).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Item>> get(@PathVariable Long id) {
+        return service.get(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
@@ -1,6 +1,15 @@
 package com.example.multiaccount.controller;
 
+import com.example.multiaccount.service.CacheWarmup;
+import com.example.multiaccount.service.EventPublisher;
+import com.example.multiaccount.service.ItemCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -10,6 +19,7 @@ import org.slf4j.LoggerFactory;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/v1/status")
@@ -26,6 +36,21 @@ public class StatusController {
     @Autowired(required = false)
     private RabbitTemplate rabbitTemplate;
 
+    @Autowired(required = false)
+    private RabbitAdmin rabbitAdmin;
+
+    @Autowired
+    private ItemCache itemCache;
+
+    @Autowired
+    private CacheWarmup cacheWarmup;
+
+    @Autowired
+    private EventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @GetMapping("/services")
     public Map<String, String> getServiceStatus() {
         Map<String, String> status = new HashMap<>();
@@ -67,14 +92,16 @@ public class StatusController {
 
     @GetMapping("/cache")
     public Map<String, Object> getCacheStats() {
-        Map<String, Object> stats = new HashMap<>();
+        Map<String, Object> stats = new HashMap<>(itemCache.stats());
 
         try {
             if (redisTemplate != null) {
-                Set<String> keys = redisTemplate.keys("item:*");
-                stats.put("totalKeys", keys != null ? keys.size() : 0);
-                stats.put("hitRate", "85%");
-                stats.put("memoryUsed", "12.5 MB");
+                // DBSIZE is O(1); it counts every key in the database, not just item:*
+                Long keys = redisTemplate.execute((RedisCallback<Long>) connection -> connection.serverCommands().dbSize());
+                Properties memory = redisTemplate.execute((RedisCallback<Properties>) connection -> connection.serverCommands().info("memory"));
+                stats.put("totalKeys", keys != null ? keys : 0);
+                stats.put("hitRate", String.format("%.1f%%", (Double) stats.get("redisHitRate") * 100));
+                stats.put("memoryUsed", memory != null ? memory.getProperty("used_memory_human") : null);
                 stats.put("connected", true);
             } else {
                 stats.put("totalKeys", 0);
@@ -84,6 +111,12 @@ public class StatusController {
             stats.put("connected", false);
         }
 
+        Map<String, Object> latency = new HashMap<>();
+        latency.putAll(percentiles("item.redis"));
+        latency.putAll(percentiles("item.db"));
+        latency.putAll(percentiles("item.publish"));
+        stats.put("latencyMs", latency);
+        stats.put("warmup", cacheWarmup.status());
         return stats;
     }
 
@@ -92,17 +125,41 @@ public class StatusController {
         Map<String, Object> stats = new HashMap<>();
 
         try {
-            stats.put("queueName", "item.events");
-            stats.put("messageCount", 0);
-            stats.put("consumerCount", 1);
-            stats.put("published", 5);
-            stats.put("delivered", 5);
-            stats.put("lastMessage", "Item created: ID 1");
-            stats.put("status", "✅ Active");
+            stats.put("queueName", "queue");
+            stats.put("published", eventPublisher.getPublishedCount());
+            stats.put("publishFailures", eventPublisher.getFailedCount());
+            stats.put("confirmed", eventPublisher.getConfirmedCount());
+            stats.put("nacked", eventPublisher.getNackedCount());
+            stats.put("retried", eventPublisher.getRetriedCount());
+            stats.put("dropped", eventPublisher.getDroppedCount());
+            stats.put("inFlight", eventPublisher.getInFlightCount());
+            stats.put("lastMessage", eventPublisher.getLastMessage());
+            QueueInformation queue = rabbitAdmin != null ? rabbitAdmin.getQueueInfo("queue") : null;
+            if (queue != null) {
+                stats.put("messageCount", queue.getMessageCount());
+                stats.put("consumerCount", queue.getConsumerCount());
+                stats.put("status", "✅ Active");
+            } else {
+                stats.put("status", "❌ Offline");
+            }
         } catch (Exception e) {
             stats.put("status", "❌ Offline");
         }
 
         return stats;
     }
+
+    private Map<String, Object> percentiles(String timerName) {
+        Map<String, Object> result = new HashMap<>();
+        for (Timer timer : meterRegistry.find(timerName).timers()) {
+            String op = timer.getId().getTag("op");
+            Map<String, Object> values = new HashMap<>();
+            values.put("count", timer.count());
+            for (ValueAtPercentile p : timer.takeSnapshot().percentileValues()) {
+                values.put("p" + Math.round(p.percentile() * 100), p.value(TimeUnit.MILLISECONDS));
+            }
+            result.put(op != null ? timerName + "." + op : timerName, values);
+        }
+        return result;
+    }
 }
@@ -1,14 +1,18 @@
 package com.example.multiaccount.controller;
 
+import com.example.multiaccount.service.WorkerLogBuffer;
+import com.example.multiaccount.service.WorkerLogStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 @RestController
@@ -16,37 +20,30 @@ import java.util.*;
 public class WorkerController {
 
     private static final Logger log = LoggerFactory.getLogger(WorkerController.class);
-    private static final List<Map<String, Object>> workerLogs = new ArrayList<>();
-    
+
+    @Autowired
+    private WorkerLogBuffer workerLogs;
+
+    @Autowired
+    private WorkerLogStream workerLogStream;
+
+    // ?since=<seq> returns only entries newer than seq, oldest first
     @GetMapping("/logs")
-    public List<Map<String, Object>> getWorkerLogs() {
+    public List<WorkerLogBuffer.Entry> getWorkerLogs(@RequestParam(defaultValue = "0") long since) {
         try {
-            log.info("Fetching worker logs, current count: {}", workerLogs.size());
-            return new ArrayList<>(workerLogs);
+            log.debug("Fetching worker logs since {}, last seq: {}", since, workerLogs.lastSeq());
+            return workerLogs.since(since, workerLogs.capacity());
         } catch (Exception e) {
             log.error("Error fetching worker logs", e);
             return new ArrayList<>();
         }
     }
-    
-    // Method to add logs from worker service (called internally)
-    public static void addWorkerLog(Long itemId, String note) {
-        Map<String, Object> logEntry = new HashMap<>();
-        logEntry.put("id", workerLogs.size() + 1);
-        logEntry.put("item_id", itemId);
-        logEntry.put("processed_at", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-        logEntry.put("note", note != null ? note : "Item processed successfully");
-        
-        workerLogs.add(logEntry);
-        
-        // Keep only last 50 logs to prevent memory issues
-        if (workerLogs.size() > 50) {
-            workerLogs.remove(0);
-        }
-    }
-    
-    // Initialize with some sample data
-    static {
-        addWorkerLog(1L, "Initial item processed during startup");
+
+    // Server-sent events; a reconnecting EventSource resumes from its Last-Event-ID
+    @GetMapping(value = "/logs/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamWorkerLogs(@RequestParam(required = false) Long since,
+                                       @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        long from = lastEventId != null ? lastEventId : since != null ? since : 0;
+        return workerLogStream.subscribe(from);
     }
-}
\ No newline at end of file
+}
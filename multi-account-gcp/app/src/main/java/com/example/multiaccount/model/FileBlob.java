@@ -0,0 +1,24 @@
+package com.example.multiaccount.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "file_blob")
+public class FileBlob {
+    @Id
+    private String sha256;
+    private long sizeBytes;
+    private int refCount;
+    private Instant createdAt;
+
+    // getters/setters
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+    public int getRefCount() { return refCount; }
+    public void setRefCount(int refCount) { this.refCount = refCount; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
@@ -5,12 +5,17 @@ import java.time.Instant;
 
 @Entity
 public class Item {
+    // Pooled sequence ids let Hibernate batch inserts; allocationSize must match the sequence increment (V2)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq")
+    @SequenceGenerator(name = "item_seq", sequenceName = "item_id_seq", allocationSize = 50)
     private Long id;
     private String name;
     private String description;
     private Instant createdAt;
+    // Bumped by every update; exposed as the ETag of GET/PUT /v1/items/{id}
+    @Version
+    private Long version;
 
     // getters/setters
     public Long getId() { return id; }
@@ -21,4 +26,6 @@ public class Item {
     public void setDescription(String description) { this.description = description; }
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
@@ -0,0 +1,43 @@
+package com.example.multiaccount.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "item_outbox")
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_outbox_seq")
+    @SequenceGenerator(name = "item_outbox_seq", sequenceName = "item_outbox_id_seq", allocationSize = 50)
+    private Long id;
+    private UUID eventId;
+    private UUID traceId;
+    private String topic;
+    private Long itemId;
+    private Instant createdAt;
+
+    public OutboxEvent() { }
+
+    public OutboxEvent(String topic, Long itemId, UUID traceId) {
+        this.eventId = UUID.randomUUID();
+        this.traceId = traceId;
+        this.topic = topic;
+        this.itemId = itemId;
+        this.createdAt = Instant.now();
+    }
+
+    // getters/setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public UUID getEventId() { return eventId; }
+    public void setEventId(UUID eventId) { this.eventId = eventId; }
+    public UUID getTraceId() { return traceId; }
+    public void setTraceId(UUID traceId) { this.traceId = traceId; }
+    public String getTopic() { return topic; }
+    public void setTopic(String topic) { this.topic = topic; }
+    public Long getItemId() { return itemId; }
+    public void setItemId(Long itemId) { this.itemId = itemId; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,40 @@
+package com.example.multiaccount.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "uploaded_file")
+public class UploadedFile {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private String savedName;
+    private String storageKey;
+    private String name;
+    private long sizeBytes;
+    private String contentType;
+    private String path;
+    private String sha256;
+    private Instant uploadedAt;
+
+    // getters/setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getSavedName() { return savedName; }
+    public void setSavedName(String savedName) { this.savedName = savedName; }
+    public String getStorageKey() { return storageKey; }
+    public void setStorageKey(String storageKey) { this.storageKey = storageKey; }
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+    public Instant getUploadedAt() { return uploadedAt; }
+    public void setUploadedAt(Instant uploadedAt) { this.uploadedAt = uploadedAt; }
+}
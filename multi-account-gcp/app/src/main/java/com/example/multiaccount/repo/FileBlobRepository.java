@@ -0,0 +1,60 @@
+package com.example.multiaccount.repo;
+
+import com.example.multiaccount.model.FileBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface FileBlobRepository extends JpaRepository<FileBlob, String> {
+
+    /**
+     * Takes a reference, inserting the row for new contents. Returns 0 without
+     * changing anything while a removal of the contents holds an unexpired
+     * claim; an expired claim is dropped. Takes the row lock, so a concurrent
+     * release or claim of the same blob waits for this transaction.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO file_blob (sha256, size_bytes, ref_count) VALUES (:sha256, :size, 1) "
+            + "ON CONFLICT (sha256) DO UPDATE SET ref_count = file_blob.ref_count + 1, deleting_until = NULL "
+            + "WHERE file_blob.deleting_until IS NULL OR file_blob.deleting_until < NOW()", nativeQuery = true)
+    int acquire(@Param("sha256") String sha256, @Param("size") long size);
+
+    // Never below zero: a release without a matching acquire (e.g. a row fixed up by hand) finds no row
+    @Query(value = "UPDATE file_blob SET ref_count = ref_count - 1 WHERE sha256 = :sha256 AND ref_count > 0 "
+            + "RETURNING ref_count", nativeQuery = true)
+    Integer release(@Param("sha256") String sha256);
+
+    /**
+     * Claims the removal of a blob whose last reference is gone until now +
+     * leaseMs. Returns 0 if it was referenced again or another removal holds
+     * an unexpired claim.
+     */
+    @Modifying
+    @Query(value = "UPDATE file_blob SET deleting_until = NOW() + make_interval(secs => :leaseMs / 1000.0) "
+            + "WHERE sha256 = :sha256 AND ref_count <= 0 AND (deleting_until IS NULL OR deleting_until < NOW())",
+            nativeQuery = true)
+    int claimRemoval(@Param("sha256") String sha256, @Param("leaseMs") long leaseMs);
+
+    // Hands a claim back after a failed removal so uploads of the contents go through right away
+    @Modifying
+    @Query(value = "UPDATE file_blob SET deleting_until = NULL WHERE sha256 = :sha256", nativeQuery = true)
+    int releaseRemovalClaim(@Param("sha256") String sha256);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM file_blob WHERE sha256 = :sha256 AND deleting_until >= NOW())",
+            nativeQuery = true)
+    boolean isBeingRemoved(@Param("sha256") String sha256);
+
+    // Unreferenced blobs nobody is removing, or whose removal claim ran out
+    @Query(value = "SELECT sha256 FROM file_blob WHERE ref_count <= 0 "
+            + "AND (deleting_until IS NULL OR deleting_until < NOW()) LIMIT :limit", nativeQuery = true)
+    List<String> findUnreferenced(@Param("limit") int limit);
+
+    // Drops the row once a claimed removal has deleted the contents
+    @Modifying
+    @Query(value = "DELETE FROM file_blob WHERE sha256 = :sha256 AND ref_count <= 0 AND deleting_until IS NOT NULL",
+            nativeQuery = true)
+    int deleteRemoved(@Param("sha256") String sha256);
+}
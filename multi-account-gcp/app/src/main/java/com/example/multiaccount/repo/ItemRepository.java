@@ -1,7 +1,16 @@
 package com.example.multiaccount.repo;
 
 import com.example.multiaccount.model.Item;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface ItemRepository extends JpaRepository<Item, Long> {
+import java.util.List;
+
+public interface ItemRepository extends JpaRepository<Item, Long>, ItemRepositoryCustom {
+
+    // Keyset page: the primary key index seeks straight to afterId, no OFFSET scan
+    List<Item> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    // Same, newest first
+    List<Item> findByIdLessThanOrderByIdDesc(Long beforeId, Pageable pageable);
 }
@@ -0,0 +1,45 @@
+package com.example.multiaccount.repo;
+
+import com.example.multiaccount.model.Item;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface ItemRepositoryCustom {
+
+    /**
+     * Reads every item in id order through a server-side cursor, handing each
+     * row to {@code consumer} as it arrives. Must run inside a transaction so
+     * the driver honours the fetch size instead of buffering the whole result.
+     */
+    void streamAll(int fetchSize, Consumer<Item> consumer);
+
+    /**
+     * Sets name and description and bumps the version in one UPDATE ... RETURNING,
+     * only if the row is still at {@code expectedVersion} (any version when null).
+     * Empty if no row matched.
+     */
+    Optional<Item> updateReturning(Long id, String name, String description, Long expectedVersion);
+
+    Optional<Long> findVersion(Long id);
+
+    /**
+     * Items whose name or description match the websearch-style {@code query}
+     * (words, "quoted phrases", or, -not), best match first with ties broken by
+     * newest id. Pass the last hit's rank and id to continue after it.
+     */
+    List<SearchHit> search(String query, Float afterRank, Long afterId, int limit);
+
+    record SearchHit(Item item, float rank) {}
+
+    /** Ids from item_hot, highest score first. */
+    List<Long> findHottestIds(int limit);
+
+    /**
+     * Merges one replica's hottest ids, hottest first, into item_hot: existing
+     * scores are halved before the new rank score is added, and rows nobody has
+     * reported for a day are removed.
+     */
+    void recordHotIds(List<Long> idsByRank);
+}
@@ -0,0 +1,101 @@
+package com.example.multiaccount.repo;
+
+import com.example.multiaccount.model.Item;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public class ItemRepositoryImpl implements ItemRepositoryCustom {
+
+    static final RowMapper<Item> ITEM_ROW_MAPPER = (rs, rowNum) -> {
+        Item item = new Item();
+        item.setId(rs.getLong("id"));
+        item.setName(rs.getString("name"));
+        item.setDescription(rs.getString("description"));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        item.setCreatedAt(createdAt != null ? createdAt.toInstant() : null);
+        item.setVersion(rs.getLong("version"));
+        return item;
+    };
+
+    private static final String UPDATE_SQL =
+            "UPDATE item SET name = ?, description = ?, version = version + 1 WHERE id = ?";
+    private static final String RETURNING = " RETURNING id, name, description, created_at, version";
+
+    // ts_rank is recomputed identically on every page, so (rank, id) is a stable keyset
+    private static final String SEARCH_SQL =
+            "SELECT * FROM (SELECT id, name, description, created_at, version, ts_rank(search, query) AS rank "
+                    + "FROM item, websearch_to_tsquery('english', ?) query WHERE search @@ query) hits ";
+    private static final String SEARCH_ORDER = "ORDER BY rank DESC, id DESC LIMIT ?";
+
+    private static final String UPSERT_HOT_SQL =
+            "INSERT INTO item_hot (item_id, score, updated_at) VALUES (?, ?, NOW()) "
+                    + "ON CONFLICT (item_id) DO UPDATE SET score = item_hot.score / 2 + EXCLUDED.score, updated_at = NOW()";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ItemRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void streamAll(int fetchSize, Consumer<Item> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT id, name, description, created_at, version FROM item ORDER BY id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(ITEM_ROW_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    @Override
+    public Optional<Item> updateReturning(Long id, String name, String description, Long expectedVersion) {
+        List<Item> updated = expectedVersion == null
+                ? jdbcTemplate.query(UPDATE_SQL + RETURNING, ITEM_ROW_MAPPER, name, description, id)
+                : jdbcTemplate.query(UPDATE_SQL + " AND version = ?" + RETURNING, ITEM_ROW_MAPPER,
+                        name, description, id, expectedVersion);
+        return updated.stream().findFirst();
+    }
+
+    @Override
+    public Optional<Long> findVersion(Long id) {
+        return jdbcTemplate.queryForList("SELECT version FROM item WHERE id = ?", Long.class, id).stream().findFirst();
+    }
+
+    @Override
+    public List<SearchHit> search(String query, Float afterRank, Long afterId, int limit) {
+        RowMapper<SearchHit> mapper = (rs, rowNum) -> new SearchHit(ITEM_ROW_MAPPER.mapRow(rs, rowNum), rs.getFloat("rank"));
+        if (afterRank == null || afterId == null) {
+            return jdbcTemplate.query(SEARCH_SQL + SEARCH_ORDER, mapper, query, limit);
+        }
+        return jdbcTemplate.query(SEARCH_SQL + "WHERE (rank, id) < (?, ?) " + SEARCH_ORDER, mapper,
+                query, afterRank, afterId, limit);
+    }
+
+    @Override
+    public List<Long> findHottestIds(int limit) {
+        return jdbcTemplate.queryForList("SELECT item_id FROM item_hot ORDER BY score DESC LIMIT ?", Long.class, limit);
+    }
+
+    @Override
+    public void recordHotIds(List<Long> idsByRank) {
+        List<Object[]> rows = new ArrayList<>(idsByRank.size());
+        for (int rank = 0; rank < idsByRank.size(); rank++) {
+            rows.add(new Object[] {idsByRank.get(rank), (double) (idsByRank.size() - rank)});
+        }
+        // Same lock order on every replica, so concurrent snapshots cannot deadlock
+        rows.sort(Comparator.comparingLong(row -> (Long) row[0]));
+        jdbcTemplate.batchUpdate(UPSERT_HOT_SQL, rows);
+        jdbcTemplate.update("DELETE FROM item_hot WHERE updated_at < NOW() - INTERVAL '1 day'");
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.multiaccount.repo;
+
+import com.example.multiaccount.model.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Leases up to {@code limit} unclaimed (or lease-expired) rows to the caller
+     * until now + leaseMs. SKIP LOCKED lets several backend replicas claim
+     * concurrently without blocking each other; the row locks only last for the
+     * claiming transaction.
+     */
+    @Query(value = "UPDATE item_outbox SET claimed_until = NOW() + make_interval(secs => :leaseMs / 1000.0) "
+            + "WHERE id IN (SELECT id FROM item_outbox WHERE claimed_until IS NULL OR claimed_until < NOW() "
+            + "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED) "
+            + "RETURNING id, event_id, trace_id, topic, item_id, created_at", nativeQuery = true)
+    List<OutboxEvent> claimBatch(@Param("limit") int limit, @Param("leaseMs") long leaseMs);
+
+    // Hands a batch back after a failed publish so the next run retries it without waiting out the lease
+    @Modifying
+    @Query(value = "UPDATE item_outbox SET claimed_until = NULL WHERE id IN (:ids)", nativeQuery = true)
+    int releaseClaims(@Param("ids") List<Long> ids);
+}
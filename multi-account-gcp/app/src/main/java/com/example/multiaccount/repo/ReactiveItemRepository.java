@@ -0,0 +1,80 @@
+package com.example.multiaccount.repo;
+
+import com.example.multiaccount.model.Item;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Non-blocking item reads over R2DBC for the /v2 endpoints.
+ *
+ * The connection pool is private to this class on purpose: a ConnectionFactory
+ * bean would make Boot back off from the JDBC DataSource that JPA, Flyway and
+ * everything else use. The URL defaults to spring.datasource.url with the
+ * jdbc: scheme swapped for r2dbc:, and the credentials are shared.
+ */
+@Repository
+public class ReactiveItemRepository {
+
+    private static final String SELECT = "SELECT id, name, description, created_at, version FROM item";
+
+    private final ConnectionPool pool;
+    private final DatabaseClient db;
+
+    public ReactiveItemRepository(@Value("${items.reactive.r2dbc-url:}") String r2dbcUrl,
+                                  @Value("${spring.datasource.url}") String jdbcUrl,
+                                  @Value("${spring.datasource.username}") String username,
+                                  @Value("${spring.datasource.password}") String password,
+                                  @Value("${items.reactive.pool.max-size:20}") int maxSize) {
+        String url = !r2dbcUrl.isBlank() ? r2dbcUrl : "r2dbc:" + jdbcUrl.substring(jdbcUrl.indexOf(':') + 1);
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(0)
+                .maxSize(maxSize)
+                .build());
+        this.db = DatabaseClient.create(pool);
+    }
+
+    public Mono<Item> findById(Long id) {
+        return db.sql(SELECT + " WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveItemRepository::toItem)
+                .one();
+    }
+
+    public Flux<Item> findAllById(Collection<Long> ids) {
+        return db.sql(SELECT + " WHERE id = ANY(:ids)")
+                .bind("ids", ids.toArray(new Long[0]))
+                .map(ReactiveItemRepository::toItem)
+                .all();
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.dispose();
+    }
+
+    private static Item toItem(Readable row) {
+        Item item = new Item();
+        item.setId(row.get("id", Long.class));
+        item.setName(row.get("name", String.class));
+        item.setDescription(row.get("description", String.class));
+        item.setCreatedAt(row.get("created_at", Instant.class));
+        item.setVersion(row.get("version", Long.class));
+        return item;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.multiaccount.repo;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Chunked upload sessions shared by all replicas (upload_session) and the
+ * parts each one has received so far (upload_session_part).
+ */
+@Repository
+public class UploadSessionRepository {
+
+    public record Session(String id, String filename, String contentType, long size, int chunkSize, int chunkCount,
+                          String stagingKey, String multipartUploadId) { }
+
+    public record Part(int partNumber, String etag) { }
+
+    private static final String COLUMNS =
+            "id, filename, content_type, size_bytes, chunk_size, chunk_count, staging_key, multipart_upload_id";
+
+    private static final RowMapper<Session> SESSION_ROW_MAPPER = (rs, rowNum) -> new Session(
+            rs.getString("id"),
+            rs.getString("filename"),
+            rs.getString("content_type"),
+            rs.getLong("size_bytes"),
+            rs.getInt("chunk_size"),
+            rs.getInt("chunk_count"),
+            rs.getString("staging_key"),
+            rs.getString("multipart_upload_id"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UploadSessionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insert(Session session) {
+        jdbcTemplate.update("INSERT INTO upload_session (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                session.id(), session.filename(), session.contentType(), session.size(), session.chunkSize(),
+                session.chunkCount(), session.stagingKey(), session.multipartUploadId());
+    }
+
+    /** Looks the session up and marks it active, so it is not expired while chunks keep coming. */
+    public Optional<Session> touch(String id) {
+        return jdbcTemplate.query("UPDATE upload_session SET last_touched = NOW() WHERE id = ? RETURNING " + COLUMNS,
+                SESSION_ROW_MAPPER, id).stream().findFirst();
+    }
+
+    /**
+     * Looks the session up and locks it until the end of the transaction.
+     * Recording a part takes a key-share lock on the session row, so no part
+     * can be added while this is held.
+     */
+    public Optional<Session> lock(String id) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM upload_session WHERE id = ? FOR UPDATE",
+                SESSION_ROW_MAPPER, id).stream().findFirst();
+    }
+
+    public boolean hasPart(String id, int partNumber) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM upload_session_part WHERE session_id = ? AND part_number = ?)",
+                Boolean.class, id, partNumber));
+    }
+
+    /**
+     * Records a received part. Returns false if the part was already recorded
+     * or the session is gone (completed, aborted or expired).
+     */
+    public boolean addPart(String id, int partNumber, String etag) {
+        try {
+            return jdbcTemplate.update("INSERT INTO upload_session_part (session_id, part_number, etag) "
+                    + "SELECT id, ?, ? FROM upload_session WHERE id = ? ON CONFLICT DO NOTHING",
+                    partNumber, etag, id) == 1;
+        } catch (DataIntegrityViolationException e) {
+            // The session was deleted between our read of it and the foreign key check
+            return false;
+        }
+    }
+
+    public List<Part> findParts(String id) {
+        return jdbcTemplate.query(
+                "SELECT part_number, etag FROM upload_session_part WHERE session_id = ? ORDER BY part_number",
+                (rs, rowNum) -> new Part(rs.getInt("part_number"), rs.getString("etag")), id);
+    }
+
+    /** Deletes the session with its parts; empty if it was already gone. */
+    public Optional<Session> remove(String id) {
+        return jdbcTemplate.query("DELETE FROM upload_session WHERE id = ? RETURNING " + COLUMNS,
+                SESSION_ROW_MAPPER, id).stream().findFirst();
+    }
+
+    /** Deletes up to limit sessions that saw no activity for ttlMs and returns them. */
+    public List<Session> removeIdle(long ttlMs, int limit) {
+        return jdbcTemplate.query("DELETE FROM upload_session WHERE id IN (SELECT id FROM upload_session "
+                + "WHERE last_touched < NOW() - make_interval(secs => ? / 1000.0) LIMIT ? FOR UPDATE SKIP LOCKED) "
+                + "RETURNING " + COLUMNS, SESSION_ROW_MAPPER, ttlMs, limit);
+    }
+}
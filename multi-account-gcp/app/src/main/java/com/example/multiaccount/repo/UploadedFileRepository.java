@@ -0,0 +1,17 @@
+package com.example.multiaccount.repo;
+
+import com.example.multiaccount.model.UploadedFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadedFileRepository extends JpaRepository<UploadedFile, Long>, UploadedFileRepositoryCustom {
+
+    // Unique index on saved_name
+    Optional<UploadedFile> findBySavedName(String savedName);
+
+    @Query("select f.storageKey from UploadedFile f")
+    List<String> findAllStorageKeys();
+}
@@ -0,0 +1,19 @@
+package com.example.multiaccount.repo;
+
+import com.example.multiaccount.model.UploadedFile;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface UploadedFileRepositoryCustom {
+
+    /**
+     * One keyset page of uploads, newest first. {@code contentType} matches
+     * exactly when it contains a slash ("image/png") and as a prefix otherwise
+     * ("image"). {@code from} is inclusive and {@code to} exclusive. The page
+     * starts after ({@code beforeUploadedAt}, {@code beforeId}) when given.
+     * Any filter may be null.
+     */
+    List<UploadedFile> findPage(String contentType, Instant from, Instant to,
+                                Instant beforeUploadedAt, Long beforeId, int limit);
+}
@@ -0,0 +1,66 @@
+package com.example.multiaccount.repo;
+
+import com.example.multiaccount.model.UploadedFile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+public class UploadedFileRepositoryImpl implements UploadedFileRepositoryCustom {
+
+    static final RowMapper<UploadedFile> UPLOADED_FILE_ROW_MAPPER = (rs, rowNum) -> {
+        UploadedFile file = new UploadedFile();
+        file.setId(rs.getLong("id"));
+        file.setSavedName(rs.getString("saved_name"));
+        file.setStorageKey(rs.getString("storage_key"));
+        file.setName(rs.getString("name"));
+        file.setSizeBytes(rs.getLong("size_bytes"));
+        file.setContentType(rs.getString("content_type"));
+        file.setPath(rs.getString("path"));
+        file.setSha256(rs.getString("sha256"));
+        file.setUploadedAt(rs.getTimestamp("uploaded_at").toInstant());
+        return file;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UploadedFileRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<UploadedFile> findPage(String contentType, Instant from, Instant to,
+                                       Instant beforeUploadedAt, Long beforeId, int limit) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, saved_name, storage_key, name, size_bytes, content_type, path, sha256, uploaded_at FROM uploaded_file WHERE TRUE");
+        List<Object> args = new ArrayList<>();
+        if (contentType != null) {
+            if (contentType.contains("/")) {
+                sql.append(" AND content_type = ?");
+                args.add(contentType);
+            } else {
+                sql.append(" AND content_type LIKE ?");
+                args.add(contentType.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "/%");
+            }
+        }
+        if (from != null) {
+            sql.append(" AND uploaded_at >= ?");
+            args.add(Timestamp.from(from));
+        }
+        if (to != null) {
+            sql.append(" AND uploaded_at < ?");
+            args.add(Timestamp.from(to));
+        }
+        if (beforeUploadedAt != null && beforeId != null) {
+            sql.append(" AND (uploaded_at, id) < (?, ?)");
+            args.add(Timestamp.from(beforeUploadedAt));
+            args.add(beforeId);
+        }
+        sql.append(" ORDER BY uploaded_at DESC, id DESC LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), UPLOADED_FILE_ROW_MAPPER, args.toArray());
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.Item;
+import com.example.multiaccount.repo.ItemRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preloads Redis after startup so a deploy or a Redis restart does not send
+ * every read to Postgres at once.
+ *
+ * Once the application is up, a background thread loads up to max-items
+ * items in batches, either the newest ones (a keyset scan down the primary
+ * key) or the most accessed ones recorded in item_hot, and writes each batch
+ * to Redis in one pipelined round trip with the usual jittered TTL. Batches
+ * are paced to rate-per-second items. If the first batch is already in Redis,
+ * as after a plain deploy, the warm-up stops there.
+ *
+ * {@link #isReady()} holds readiness back until ready-threshold of the target
+ * is loaded, the scan ends, or ready-timeout-seconds pass, so a broken Redis
+ * cannot keep a replica out of rotation for good.
+ *
+ * For the accessed strategy every replica periodically merges the hottest ids
+ * of its near cache into item_hot.
+ */
+@Component
+public class CacheWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmup.class);
+
+    public enum State { DISABLED, PENDING, RUNNING, DONE, SKIPPED, FAILED }
+
+    private final ItemRepository repo;
+    private final ItemCache cache;
+    private final ItemNearCache nearCache;
+    private final boolean enabled;
+    private final String strategy;
+    private final int maxItems;
+    private final int batchSize;
+    private final int ratePerSecond;
+    private final double readyThreshold;
+    private final long readyTimeoutMs;
+
+    private final AtomicLong loaded = new AtomicLong();
+    private volatile State state;
+    private volatile long startedAtMs;
+    private volatile long finishedAtMs;
+    private volatile Thread worker;
+
+    public CacheWarmup(ItemRepository repo, ItemCache cache, ItemNearCache nearCache, MeterRegistry meterRegistry,
+                       @Value("${cache.warmup.enabled:true}") boolean enabled,
+                       @Value("${cache.warmup.strategy:recent}") String strategy,
+                       @Value("${cache.warmup.max-items:50000}") int maxItems,
+                       @Value("${cache.warmup.batch-size:500}") int batchSize,
+                       @Value("${cache.warmup.rate-per-second:5000}") int ratePerSecond,
+                       @Value("${cache.warmup.ready-threshold:0.9}") double readyThreshold,
+                       @Value("${cache.warmup.ready-timeout-seconds:300}") long readyTimeoutSeconds) {
+        this.repo = repo;
+        this.cache = cache;
+        this.nearCache = nearCache;
+        this.enabled = enabled && maxItems > 0;
+        this.strategy = strategy;
+        this.maxItems = maxItems;
+        this.batchSize = Math.max(1, batchSize);
+        this.ratePerSecond = ratePerSecond;
+        this.readyThreshold = readyThreshold;
+        this.readyTimeoutMs = TimeUnit.SECONDS.toMillis(readyTimeoutSeconds);
+        this.state = this.enabled ? State.PENDING : State.DISABLED;
+        meterRegistry.gauge("item.cache.warmup.loaded", loaded);
+        if (!"recent".equals(strategy) && !"accessed".equals(strategy)) {
+            throw new IllegalArgumentException("cache.warmup.strategy must be recent or accessed, was " + strategy);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        startedAtMs = System.currentTimeMillis();
+        Thread thread = new Thread(this::run, "cache-warmup");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    public boolean isReady() {
+        return switch (state) {
+            case DISABLED, DONE, SKIPPED, FAILED -> true;
+            case PENDING -> false;
+            case RUNNING -> loaded.get() >= readyThreshold * maxItems
+                    || System.currentTimeMillis() - startedAtMs >= readyTimeoutMs;
+        };
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state.name());
+        status.put("strategy", strategy);
+        status.put("loaded", loaded.get());
+        status.put("target", maxItems);
+        status.put("progress", Math.min(1.0, (double) loaded.get() / maxItems));
+        status.put("ready", isReady());
+        if (startedAtMs > 0) {
+            long end = finishedAtMs > 0 ? finishedAtMs : System.currentTimeMillis();
+            status.put("elapsedMs", end - startedAtMs);
+        }
+        return status;
+    }
+
+    @Scheduled(initialDelayString = "${cache.warmup.hot-snapshot-interval-ms:300000}",
+            fixedDelayString = "${cache.warmup.hot-snapshot-interval-ms:300000}")
+    public void snapshotHotItems() {
+        if (!enabled || !"accessed".equals(strategy)) {
+            return;
+        }
+        List<Long> hottest = nearCache.hottest(maxItems);
+        if (hottest.isEmpty()) {
+            return;
+        }
+        try {
+            repo.recordHotIds(hottest);
+            log.debug("Recorded {} hot item ids", hottest.size());
+        } catch (Exception e) {
+            log.warn("Failed to record hot item ids: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        state = State.RUNNING;
+        log.info("Cache warm-up started (strategy={}, maxItems={}, rate={}/s)", strategy, maxItems, ratePerSecond);
+        try {
+            boolean complete = "accessed".equals(strategy) ? warmAccessed() : warmRecent();
+            state = complete ? State.DONE : State.SKIPPED;
+            log.info("Cache warm-up {} after {} items in {} ms", complete ? "finished" : "skipped, Redis is already warm",
+                    loaded.get(), System.currentTimeMillis() - startedAtMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = State.FAILED;
+        } catch (Exception e) {
+            state = State.FAILED;
+            log.warn("Cache warm-up failed after {} items: {}", loaded.get(), e.getMessage());
+        } finally {
+            finishedAtMs = System.currentTimeMillis();
+            worker = null;
+        }
+    }
+
+    // Returns false when the first batch shows Redis is already warm
+    private boolean warmRecent() throws InterruptedException {
+        long beforeId = Long.MAX_VALUE;
+        boolean first = true;
+        while (loaded.get() < maxItems) {
+            long start = System.nanoTime();
+            int size = (int) Math.min(batchSize, maxItems - loaded.get());
+            List<Item> batch = repo.findByIdLessThanOrderByIdDesc(beforeId, PageRequest.of(0, size));
+            if (batch.isEmpty()) {
+                break;
+            }
+            if (first && alreadyCached(batch)) {
+                return false;
+            }
+            first = false;
+            write(batch);
+            beforeId = batch.get(batch.size() - 1).getId();
+            if (batch.size() < size) {
+                break;
+            }
+            pace(batch.size(), start);
+        }
+        return true;
+    }
+
+    private boolean warmAccessed() throws InterruptedException {
+        List<Long> ids = repo.findHottestIds(maxItems);
+        if (ids.isEmpty()) {
+            log.info("No access history in item_hot yet, warming the most recent items instead");
+            return warmRecent();
+        }
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            long start = System.nanoTime();
+            List<Item> batch = repo.findAllById(ids.subList(from, Math.min(from + batchSize, ids.size())));
+            if (from == 0 && alreadyCached(batch)) {
+                return false;
+            }
+            write(batch);
+            pace(batch.size(), start);
+        }
+        return true;
+    }
+
+    private boolean alreadyCached(List<Item> batch) {
+        List<Long> ids = batch.stream().map(Item::getId).toList();
+        return cache.countCached(ids) >= readyThreshold * ids.size();
+    }
+
+    private void write(List<Item> batch) {
+        if (!cache.preload(batch)) {
+            throw new IllegalStateException("Redis is unavailable");
+        }
+        loaded.addAndGet(batch.size());
+    }
+
+    // Spreads batches out so that loading never exceeds rate-per-second items
+    private void pace(int items, long batchStartNanos) throws InterruptedException {
+        if (ratePerSecond <= 0) {
+            return;
+        }
+        long minNanos = items * TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long remaining = minNanos - (System.nanoTime() - batchStartNanos);
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.multiaccount.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Resumable uploads in fixed-size chunks.
+ *
+ * {@link #init} preallocates a part file of the final size. Each chunk is
+ * streamed from the request straight into the part file at its offset with
+ * {@link FileChannel#transferFrom}, so chunks can arrive in any order and in
+ * parallel. A CRC32C is computed per chunk while it streams, and the SHA-256
+ * of the whole file is advanced over the contiguous prefix of received chunks
+ * (read back from the page cache), so memory stays flat whatever the file size.
+ * A client that loses its connection asks for the session status and re-sends
+ * only the missing chunks. Sessions live in memory and are dropped, part file
+ * included, after files.upload.session-ttl-minutes without activity.
+ *
+ * Sessions only exist on the replica that started them, so with several
+ * replicas every request of an upload has to reach that replica. With
+ * storage.backend=s3, {@link S3ChunkedUploadService} takes the chunked
+ * uploads instead and this service only provides staging for whole-file
+ * uploads.
+ */
+@Service
+public class ChunkedUploadService implements ChunkedUploads {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+    private final Path partialDir;
+    private final int defaultChunkSize;
+    private final long maxSize;
+    private final long sessionTtlMs;
+    private final ConcurrentMap<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    public ChunkedUploadService(@Value("${files.upload.dir:/tmp/uploads}") String uploadDir,
+                                @Value("${files.upload.chunk-size:8388608}") int defaultChunkSize,
+                                @Value("${files.upload.max-size:10737418240}") long maxSize,
+                                @Value("${files.upload.session-ttl-minutes:1440}") long sessionTtlMinutes) throws IOException {
+        this.partialDir = Paths.get(uploadDir).resolve(".partial");
+        this.defaultChunkSize = defaultChunkSize;
+        this.maxSize = maxSize;
+        this.sessionTtlMs = TimeUnit.MINUTES.toMillis(sessionTtlMinutes);
+        Files.createDirectories(partialDir);
+    }
+
+    @Override
+    public Map<String, Object> init(String filename, long size, String contentType, Integer chunkSize) throws IOException {
+        checkNewUpload(filename, size, maxSize);
+        int effectiveChunkSize = Math.min(Math.max(chunkSize != null ? chunkSize : defaultChunkSize, MIN_CHUNK_SIZE), MAX_CHUNK_SIZE);
+        String uploadId = UUID.randomUUID().toString();
+        UploadSession session = new UploadSession(uploadId, filename, contentType, size, effectiveChunkSize,
+                partialDir.resolve(uploadId));
+        sessions.put(uploadId, session);
+        log.info("Started chunked upload {} for {} ({} bytes, {} chunks)", uploadId, filename, size, session.chunkCount);
+        return session.status();
+    }
+
+    @Override
+    public Map<String, Object> status(String uploadId) {
+        return session(uploadId).status();
+    }
+
+    /**
+     * Streams one chunk into place. Returns false without reading the body if
+     * the chunk was already received, so a client retrying after a lost
+     * response does not upset the running checksum.
+     */
+    @Override
+    public boolean writeChunk(String uploadId, int index, long contentLength, String expectedCrc32c,
+                              InputStream body) throws IOException {
+        UploadSession session = session(uploadId);
+        long offset = (long) index * session.chunkSize;
+        long length = chunkLength(index, contentLength, session.size, session.chunkSize, session.chunkCount);
+        if (session.isReceived(index)) {
+            return false;
+        }
+
+        CRC32C crc = new CRC32C();
+        ReadableByteChannel source = Channels.newChannel(new CheckedInputStream(body, crc));
+        long written = 0;
+        while (written < length) {
+            long n = session.channel.transferFrom(source, offset + written, length - written);
+            if (n <= 0) {
+                break;
+            }
+            written += n;
+        }
+        if (written != length) {
+            throw new IllegalArgumentException("Chunk " + index + " was truncated at " + written + " of " + length + " bytes");
+        }
+        if (expectedCrc32c != null && Long.parseUnsignedLong(expectedCrc32c, 16) != crc.getValue()) {
+            throw new IllegalArgumentException("CRC32C mismatch for chunk " + index);
+        }
+        session.markReceived(index);
+        return true;
+    }
+
+    /**
+     * Verifies that every chunk arrived (and the SHA-256, if the client sent
+     * one). The assembled file stays in staging for the caller to store.
+     */
+    @Override
+    public CompletedUpload complete(String uploadId, String expectedSha256) throws IOException {
+        UploadSession session = session(uploadId);
+        String sha256;
+        session.lock.lock();
+        try {
+            int missing = session.chunkCount - session.received.cardinality();
+            if (missing > 0) {
+                throw new IllegalStateException(missing + " chunks are still missing");
+            }
+            if (!sessions.remove(uploadId, session)) {
+                throw new NoSuchElementException("Unknown upload " + uploadId);
+            }
+            sha256 = HexFormat.of().formatHex(session.digest.digest());
+            session.channel.force(false);
+            session.channel.close();
+        } finally {
+            session.lock.unlock();
+        }
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+            Files.deleteIfExists(session.partPath);
+            throw new IllegalArgumentException("SHA-256 mismatch, upload discarded");
+        }
+        log.info("Completed chunked upload {} for {} (sha256 {})", uploadId, session.filename, sha256);
+        return new CompletedUpload(session.filename, session.partPath, null, session.size, session.contentType, sha256);
+    }
+
+    /** A fresh path in the staging directory, on the same filesystem as local storage. */
+    public Path stagingPath() {
+        return partialDir.resolve(UUID.randomUUID().toString());
+    }
+
+    @Override
+    public void abort(String uploadId) throws IOException {
+        UploadSession session = sessions.remove(uploadId);
+        if (session == null) {
+            throw new NoSuchElementException("Unknown upload " + uploadId);
+        }
+        session.discard();
+    }
+
+    @Scheduled(fixedDelayString = "${files.upload.cleanup-interval-ms:60000}")
+    public void expireIdleSessions() {
+        long cutoff = System.currentTimeMillis() - sessionTtlMs;
+        for (UploadSession session : sessions.values()) {
+            if (session.lastTouched < cutoff && sessions.remove(session.id, session)) {
+                log.info("Expiring idle chunked upload {} ({})", session.id, session.filename);
+                try {
+                    session.discard();
+                } catch (IOException e) {
+                    log.warn("Failed to remove part file of upload {}: {}", session.id, e.getMessage());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (UploadSession session : sessions.values()) {
+            try {
+                session.channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close upload {}: {}", session.id, e.getMessage());
+            }
+        }
+    }
+
+    static void checkNewUpload(String filename, long size, long maxSize) {
+        if (filename == null || filename.isBlank() || filename.contains("/") || filename.contains("\\")) {
+            throw new IllegalArgumentException("Invalid filename");
+        }
+        if (size < 0 || size > maxSize) {
+            throw new IllegalArgumentException("Size must be between 0 and " + maxSize + " bytes");
+        }
+    }
+
+    // The exact length chunk index must have; every chunk but the last is chunkSize bytes
+    static long chunkLength(int index, long contentLength, long size, int chunkSize, int chunkCount) {
+        if (index < 0 || index >= chunkCount) {
+            throw new IllegalArgumentException("Chunk index must be between 0 and " + (chunkCount - 1));
+        }
+        long length = Math.min(chunkSize, size - (long) index * chunkSize);
+        if (contentLength != length) {
+            throw new IllegalArgumentException("Chunk " + index + " must be exactly " + length + " bytes");
+        }
+        return length;
+    }
+
+    private UploadSession session(String uploadId) {
+        UploadSession session = sessions.get(uploadId);
+        if (session == null) {
+            throw new NoSuchElementException("Unknown upload " + uploadId);
+        }
+        session.lastTouched = System.currentTimeMillis();
+        return session;
+    }
+
+    private static final class UploadSession {
+        final String id;
+        final String filename;
+        final String contentType;
+        final long size;
+        final int chunkSize;
+        final int chunkCount;
+        final Path partPath;
+        final FileChannel channel;
+        final BitSet received;
+        final MessageDigest digest;
+        final ByteBuffer digestBuffer = ByteBuffer.allocateDirect(DIGEST_BUFFER_SIZE);
+        // A lock rather than a monitor: the digest advances with file reads while it is held, which would pin a virtual thread
+        final ReentrantLock lock = new ReentrantLock();
+        int hashedChunks;
+        volatile long lastTouched = System.currentTimeMillis();
+
+        UploadSession(String id, String filename, String contentType, long size, int chunkSize, Path partPath) throws IOException {
+            this.id = id;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+            this.partPath = partPath;
+            this.received = new BitSet(chunkCount);
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            this.channel = FileChannel.open(partPath, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Extend to the full length up front so chunks can land at any offset
+            if (size > 0) {
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+        }
+
+        boolean isReceived(int index) {
+            lock.lock();
+            try {
+                return received.get(index);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void markReceived(int index) throws IOException {
+            lock.lock();
+            try {
+                if (received.get(index)) {
+                    return;
+                }
+                received.set(index);
+                // Chunks may arrive out of order; the digest only ever moves over the contiguous prefix
+                while (hashedChunks < chunkCount && received.get(hashedChunks)) {
+                    long position = (long) hashedChunks * chunkSize;
+                    long end = Math.min(position + chunkSize, size);
+                    while (position < end) {
+                        digestBuffer.clear().limit((int) Math.min(DIGEST_BUFFER_SIZE, end - position));
+                        int n = channel.read(digestBuffer, position);
+                        if (n < 0) {
+                            throw new IOException("Unexpected end of part file for upload " + id);
+                        }
+                        digestBuffer.flip();
+                        digest.update(digestBuffer);
+                        position += n;
+                    }
+                    hashedChunks++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Map<String, Object> status() {
+            List<Integer> missing = new ArrayList<>();
+            int receivedChunks;
+            lock.lock();
+            try {
+                for (int i = received.nextClearBit(0); i < chunkCount; i = received.nextClearBit(i + 1)) {
+                    missing.add(i);
+                }
+                receivedChunks = received.cardinality();
+            } finally {
+                lock.unlock();
+            }
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("uploadId", id);
+            status.put("filename", filename);
+            status.put("size", size);
+            status.put("chunkSize", chunkSize);
+            status.put("chunkCount", chunkCount);
+            status.put("receivedChunks", receivedChunks);
+            status.put("missingChunks", missing);
+            return status;
+        }
+
+        void discard() throws IOException {
+            lock.lock();
+            try {
+                channel.close();
+            } finally {
+                lock.unlock();
+            }
+            Files.deleteIfExists(partPath);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.multiaccount.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Resumable uploads in fixed-size chunks: a session is started, chunks are
+ * sent in any order (in parallel, again after a lost response) and the
+ * session is completed once all of them arrived.
+ * {@link ChunkedUploadService} keeps sessions on this replica;
+ * {@link S3ChunkedUploadService}, used with storage.backend=s3, keeps them in
+ * the database and the bucket so any replica can take any request.
+ */
+public interface ChunkedUploads {
+
+    /**
+     * An upload whose chunks all arrived. The assembled contents are in the
+     * local file {@code staged} or, when that is null, in storage under
+     * {@code stagedKey}.
+     */
+    record CompletedUpload(String originalName, Path staged, String stagedKey, long size, String contentType,
+                           String sha256) { }
+
+    Map<String, Object> init(String filename, long size, String contentType, Integer chunkSize) throws IOException;
+
+    Map<String, Object> status(String uploadId);
+
+    /**
+     * Streams one chunk into place. Returns false without reading the body if
+     * the chunk was already received.
+     */
+    boolean writeChunk(String uploadId, int index, long contentLength, String expectedCrc32c, InputStream body)
+            throws IOException;
+
+    /**
+     * Verifies that every chunk arrived (and the SHA-256, if the client sent
+     * one). The assembled contents stay staged for the caller to store.
+     */
+    CompletedUpload complete(String uploadId, String expectedSha256) throws IOException;
+
+    void abort(String uploadId) throws IOException;
+}
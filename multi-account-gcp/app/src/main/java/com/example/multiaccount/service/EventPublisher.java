@@ -1,35 +1,464 @@
 package com.example.multiaccount.service;
 
 import com.example.multiaccount.model.Item;
-import com.example.multiaccount.controller.WorkerController;
+import com.example.multiaccount.model.OutboxEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes item events to the "exchange" topic exchange.
+ *
+ * In async mode (events.publisher.async) {@link #publish} and {@link #publishAll}
+ * only put the event into a bounded buffer. A dedicated thread drains the
+ * buffer in batches over one channel and tracks publisher confirms
+ * asynchronously; at most max-in-flight messages may be unconfirmed, and a
+ * message without a confirm after confirm-timeout-ms counts as not confirmed.
+ * Events that could not be sent, or that the broker nacked or never
+ * confirmed, go back into the buffer with the same event id (the worker drops
+ * duplicates) until max-attempts is reached; only then are they dropped and
+ * counted. When the buffer stays full the caller publishes the event itself
+ * and waits for its confirm, which slows producers down; if that fails too
+ * the event is dropped and counted. Delivery that must survive a longer
+ * broker outage or a restart needs the outbox (events.outbox.enabled).
+ *
+ * Besides the event id (the AMQP message id) every message carries a trace
+ * id shared by the events of one call, the time the event was created (in
+ * the item's transaction when it goes through the outbox) and the time it was
+ * handed to the broker, both in epoch milliseconds. The worker derives queue
+ * wait and end-to-end lag from them.
+ */
 @Component
 public class EventPublisher {
     private static final Logger log = LoggerFactory.getLogger(EventPublisher.class);
+
+    public static final String TRACE_ID_HEADER = "x-trace-id";
+    public static final String CREATED_AT_HEADER = "x-created-at";
+    public static final String PUBLISHED_AT_HEADER = "x-published-at";
+
     private final RabbitTemplate rabbitTemplate;
+    private final WorkerLogBuffer workerLogs;
+    private final Timer publishTimer;
+    private final Counter published;
+    private final Counter failed;
+    private final Counter confirmed;
+    private final Counter nacked;
+    private final long confirmTimeoutMs;
+    private volatile String lastMessage;
+
+    private final boolean async;
+    private final BlockingQueue<PendingEvent> buffer;
+    private final int batchSize;
+    private final long offerTimeoutMs;
+    private final Semaphore inFlightPermits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final Counter retried;
+    private final Counter dropped;
+
+    private record PendingEvent(String eventId, String traceId, Instant createdAt, String topic, Long itemId, int attempt) {
 
-    public EventPublisher(RabbitTemplate rabbitTemplate) {
+        PendingEvent nextAttempt() {
+            return new PendingEvent(eventId, traceId, createdAt, topic, itemId, attempt + 1);
+        }
+    }
+
+    public EventPublisher(RabbitTemplate rabbitTemplate, WorkerLogBuffer workerLogs, MeterRegistry meterRegistry,
+                          @Value("${events.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+                          @Value("${events.publisher.async:true}") boolean async,
+                          @Value("${events.publisher.buffer-capacity:10000}") int bufferCapacity,
+                          @Value("${events.publisher.batch-size:100}") int batchSize,
+                          @Value("${events.publisher.max-in-flight:1000}") int maxInFlight,
+                          @Value("${events.publisher.offer-timeout-ms:50}") long offerTimeoutMs,
+                          @Value("${events.publisher.max-attempts:5}") int maxAttempts,
+                          @Value("${events.publisher.retry-backoff-ms:500}") long retryBackoffMs) {
+        if (async && batchSize > maxInFlight) {
+            // The flusher takes a permit per event of a batch up front and would wait forever
+            throw new IllegalArgumentException("events.publisher.batch-size (" + batchSize
+                    + ") must not exceed events.publisher.max-in-flight (" + maxInFlight + ")");
+        }
         this.rabbitTemplate = rabbitTemplate;
+        this.workerLogs = workerLogs;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        this.publishTimer = meterRegistry.timer("item.publish");
+        this.published = meterRegistry.counter("item.events.published", "result", "ok");
+        this.failed = meterRegistry.counter("item.events.published", "result", "error");
+        this.confirmed = meterRegistry.counter("item.events.confirmed", "result", "ack");
+        this.nacked = meterRegistry.counter("item.events.confirmed", "result", "nack");
+        this.retried = meterRegistry.counter("item.events.retried");
+        this.dropped = meterRegistry.counter("item.events.dropped");
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.retryBackoffMs = retryBackoffMs;
+
+        this.async = async;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.inFlightPermits = new Semaphore(maxInFlight);
+        meterRegistry.gauge("item.events.buffered", buffer, BlockingQueue::size);
+        meterRegistry.gauge("item.events.inflight", inFlight);
+
+        if (async) {
+            this.flusher = new Thread(this::flushLoop, "event-publisher");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
     }
 
     public void publish(String topic, Item item) {
+        PendingEvent event = newEvent(newTraceId(), topic, item);
+        if (async) {
+            enqueue(event);
+            return;
+        }
+        publishNow(event);
+    }
+
+    private void publishNow(PendingEvent event) {
+        String topic = event.topic();
+        Long itemId = event.itemId();
         try {
-            log.info("Publishing event for item ID: {} with topic: {}", item.getId(), topic);
-            rabbitTemplate.convertAndSend("exchange", topic, item.getId());
+            log.info("Publishing event for item ID: {} with topic: {}", itemId, topic);
+            publishTimer.record(() -> rabbitTemplate.convertAndSend("exchange", topic, itemId,
+                    withHeaders(event.eventId(), event.traceId(), event.createdAt())));
+            published.increment();
+            lastMessage = topic + ": ID " + itemId;
             
             // Log the worker activity
-            WorkerController.addWorkerLog(item.getId(), 
+            workerLogs.add(itemId, 
                 "Event published to RabbitMQ - Topic: " + topic);
             
-            log.info("Event published successfully for item: {}", item.getId());
+            log.info("Event published successfully for item: {}", itemId);
         } catch (Exception e) {
-            log.error("Failed to publish event for item: {}", item.getId(), e);
-            WorkerController.addWorkerLog(item.getId(), 
+            failed.increment();
+            log.error("Failed to publish event for item: {}", itemId, e);
+            workerLogs.add(itemId, 
                 "Failed to publish event - Error: " + e.getMessage());
         }
     }
+
+    /** Publishes one event per item over a single channel. */
+    public void publishAll(String topic, List<Item> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        String traceId = newTraceId();
+        if (async) {
+            items.forEach(item -> enqueue(newEvent(traceId, topic, item)));
+            return;
+        }
+        Instant createdAt = Instant.now();
+        try {
+            log.info("Publishing {} events with topic: {}", items.size(), topic);
+            publishTimer.record(() -> rabbitTemplate.invoke(ops -> {
+                for (Item item : items) {
+                    ops.convertAndSend("exchange", topic, item.getId(), withHeaders(newEventId(), traceId, createdAt));
+                }
+                return null;
+            }));
+            published.increment(items.size());
+            lastMessage = topic + ": " + items.size() + " items, last ID " + items.get(items.size() - 1).getId();
+
+            workerLogs.add(items.get(0).getId(),
+                "Batch of " + items.size() + " events published to RabbitMQ - Topic: " + topic);
+        } catch (Exception e) {
+            failed.increment(items.size());
+            log.error("Failed to publish {} events with topic: {}", items.size(), topic, e);
+            workerLogs.add(items.get(0).getId(),
+                "Failed to publish batch of " + items.size() + " events - Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Publishes outbox events over one channel and waits until the broker has
+     * confirmed all of them. Throws if any message is nacked or unconfirmed, so
+     * the caller can keep the events for a retry.
+     */
+    public void publishConfirmed(List<OutboxEvent> events) {
+        List<CorrelationData> confirms = new ArrayList<>(events.size());
+        try {
+            publishTimer.record(() -> {
+                rabbitTemplate.invoke(ops -> {
+                    for (OutboxEvent event : events) {
+                        String eventId = event.getEventId().toString();
+                        // Rows written before trace ids existed trace as themselves
+                        String traceId = event.getTraceId() != null ? event.getTraceId().toString() : eventId;
+                        CorrelationData correlation = new CorrelationData(eventId);
+                        ops.convertAndSend("exchange", event.getTopic(), event.getItemId(),
+                                withHeaders(eventId, traceId, event.getCreatedAt()), correlation);
+                        confirms.add(correlation);
+                    }
+                    return null;
+                });
+                // Confirms arrive asynchronously; the whole batch is in flight before we wait
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+                for (CorrelationData correlation : confirms) {
+                    awaitAck(correlation, deadline);
+                }
+            });
+        } catch (RuntimeException e) {
+            failed.increment(events.size());
+            workerLogs.add(events.get(0).getItemId(),
+                "Failed to publish batch of " + events.size() + " events - Error: " + e.getMessage());
+            throw e;
+        }
+
+        published.increment(events.size());
+        OutboxEvent last = events.get(events.size() - 1);
+        lastMessage = last.getTopic() + ": ID " + last.getItemId();
+        workerLogs.add(events.get(0).getItemId(),
+            "Batch of " + events.size() + " events published to RabbitMQ and confirmed");
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.join(confirmTimeoutMs);
+        }
+    }
+
+    private void enqueue(PendingEvent event) {
+        try {
+            if (buffer.offer(event, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Buffer is full: fall back to publishing on the caller's thread
+        log.warn("Event buffer full, publishing item {} synchronously", event.itemId());
+        publishNowConfirmed(event);
+    }
+
+    // The retries are what filled the buffer, so an event that fails here as well is lost
+    private void publishNowConfirmed(PendingEvent event) {
+        CorrelationData correlation = new CorrelationData(event.eventId());
+        try {
+            publishTimer.record(() -> {
+                rabbitTemplate.convertAndSend("exchange", event.topic(), event.itemId(),
+                        withHeaders(event.eventId(), event.traceId(), event.createdAt()), correlation);
+                awaitAck(correlation, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs));
+            });
+        } catch (RuntimeException e) {
+            failed.increment();
+            drop(event, e.getMessage());
+            return;
+        }
+        published.increment();
+        lastMessage = event.topic() + ": ID " + event.itemId();
+    }
+
+    private void flushLoop() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                PendingEvent first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Failed to publish batch of {} events", batch.size(), e);
+                workerLogs.add(batch.get(0).itemId(),
+                    "Failed to publish batch of " + batch.size() + " events - Error: " + e.getMessage());
+                // Unsent events are back in the buffer; give the broker a moment before retrying them
+                if (!pause(retryBackoffMs)) {
+                    return;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingEvent> batch) throws InterruptedException {
+        inFlightPermits.acquire(batch.size());
+        AtomicInteger sent = new AtomicInteger();
+        try {
+            publishTimer.record(() -> rabbitTemplate.invoke(ops -> {
+                for (PendingEvent event : batch) {
+                    CorrelationData correlation = new CorrelationData(event.eventId());
+                    inFlight.incrementAndGet();
+                    try {
+                        ops.convertAndSend("exchange", event.topic(), event.itemId(),
+                                withHeaders(event.eventId(), event.traceId(), event.createdAt()), correlation);
+                    } catch (RuntimeException e) {
+                        inFlight.decrementAndGet();
+                        throw e;
+                    }
+                    sent.incrementAndGet();
+                    // A confirm that never arrives would otherwise hold its permit until the channel closes
+                    correlation.getFuture().orTimeout(confirmTimeoutMs, TimeUnit.MILLISECONDS)
+                            .whenComplete((confirm, error) -> onConfirm(event, confirm, error));
+                }
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            retry(batch.subList(sent.get(), batch.size()), e.getMessage());
+            throw e;
+        } finally {
+            // Permits for sent messages are returned by onConfirm
+            int unsent = batch.size() - sent.get();
+            if (unsent > 0) {
+                inFlightPermits.release(unsent);
+                failed.increment(unsent);
+            }
+            published.increment(sent.get());
+        }
+
+        PendingEvent last = batch.get(batch.size() - 1);
+        lastMessage = last.topic() + ": ID " + last.itemId();
+        workerLogs.add(batch.get(0).itemId(),
+            "Batch of " + batch.size() + " events published to RabbitMQ");
+    }
+
+    private void onConfirm(PendingEvent event, CorrelationData.Confirm confirm, Throwable error) {
+        inFlight.decrementAndGet();
+        inFlightPermits.release();
+        if (error == null && confirm.isAck()) {
+            confirmed.increment();
+        } else {
+            nacked.increment();
+            String reason = error instanceof TimeoutException ? "no confirm within " + confirmTimeoutMs + " ms"
+                    : error != null ? error.getMessage() : confirm.getReason();
+            log.error("Broker did not confirm event for item {}: {}", event.itemId(), reason);
+            retry(List.of(event), reason);
+        }
+    }
+
+    // Puts events back into the buffer for another attempt, or drops them once max-attempts is used up
+    private void retry(List<PendingEvent> events, String reason) {
+        for (PendingEvent event : events) {
+            if (event.attempt() + 1 < maxAttempts && buffer.offer(event.nextAttempt())) {
+                retried.increment();
+                continue;
+            }
+            drop(event, reason);
+        }
+    }
+
+    private void drop(PendingEvent event, String reason) {
+        dropped.increment();
+        log.error("Dropping event {} for item {} after {} attempts: {}",
+                event.eventId(), event.itemId(), event.attempt() + 1, reason);
+        workerLogs.add(event.itemId(), "Event dropped after " + (event.attempt() + 1) + " attempts - Error: " + reason);
+    }
+
+    private static boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public long getPublishedCount() {
+        return (long) published.count();
+    }
+
+    public long getFailedCount() {
+        return (long) failed.count();
+    }
+
+    public long getConfirmedCount() {
+        return (long) confirmed.count();
+    }
+
+    public long getNackedCount() {
+        return (long) nacked.count();
+    }
+
+    public long getRetriedCount() {
+        return (long) retried.count();
+    }
+
+    public long getDroppedCount() {
+        return (long) dropped.count();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    private static String newEventId() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static String newTraceId() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static PendingEvent newEvent(String traceId, String topic, Item item) {
+        return new PendingEvent(newEventId(), traceId, Instant.now(), topic, item.getId(), 0);
+    }
+
+    /**
+     * Every event carries a unique message id so consumers can drop redeliveries,
+     * plus the trace headers. The publish time is taken as the message is sent.
+     */
+    private static MessagePostProcessor withHeaders(String eventId, String traceId, Instant createdAt) {
+        return message -> {
+            MessageProperties properties = message.getMessageProperties();
+            properties.setMessageId(eventId);
+            properties.setHeader(TRACE_ID_HEADER, traceId);
+            properties.setHeader(CREATED_AT_HEADER, createdAt.toEpochMilli());
+            properties.setHeader(PUBLISHED_AT_HEADER, System.currentTimeMillis());
+            return message;
+        };
+    }
+
+    private void awaitAck(CorrelationData correlation, long deadlineNanos) {
+        try {
+            CorrelationData.Confirm confirm = correlation.getFuture()
+                    .get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (!confirm.isAck()) {
+                throw new AmqpException("Broker nacked event " + correlation.getId() + ": " + confirm.getReason());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted waiting for publisher confirms", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new AmqpException("No publisher confirm for event " + correlation.getId(), e);
+        }
+    }
 }
@@ -0,0 +1,368 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.UploadedFile;
+import com.example.multiaccount.repo.FileBlobRepository;
+import com.example.multiaccount.repo.UploadedFileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Durable upload metadata in the uploaded_file table: one row per stored
+ * file, looked up by savedName through its unique index and listed in keyset
+ * pages newest first.
+ *
+ * Contents are content-addressed: every upload gets its own row and a random
+ * savedName, but the bytes are stored once under their SHA-256 and
+ * file_blob.ref_count tracks how many uploads point at them.
+ *
+ * Transfers to and from storage never run inside a database transaction, so
+ * a multi-GB upload holds neither a pooled connection nor a row lock. An
+ * upload is stored first and then recorded in one short transaction (refcount
+ * upsert plus the uploaded_file row). Deleting the last reference leaves the
+ * file_blob row at zero. After that commit the removal is claimed for a
+ * lease in one short transaction, the contents are deleted with no
+ * transaction open, and the row goes in another. An upload of the same
+ * contents takes no reference while the claim holds, and re-checks that the
+ * contents exist once it has one, so it can never point at deleted bytes.
+ * Blobs whose removal failed or whose claim ran out are retried by a periodic
+ * sweep; contents stored by an upload whose transaction then failed stay
+ * behind unreferenced.
+ */
+@Service
+public class FileMetadataService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileMetadataService.class);
+    public static final int MAX_PAGE_SIZE = 500;
+
+    static final String BLOB_PREFIX = "sha256-";
+    // Far longer than a storage DELETE takes; a removal that died half-way is left to the sweep until it runs out
+    static final long BLOB_REMOVAL_LEASE_MS = 300_000;
+    // How long an upload waits for a removal of the same contents to finish before giving up
+    static final long BLOB_REMOVAL_WAIT_MS = 10_000;
+
+    private final UploadedFileRepository repo;
+    private final FileBlobRepository blobs;
+    private final FileStorage storage;
+    private final TransactionTemplate transactionTemplate;
+    private final Path uploadDir;
+    private final boolean localStorage;
+
+    // What a delete left to remove from storage once its transaction has committed
+    private record Removed(String storageKey, boolean lastReference) { }
+
+    // Puts staged contents in storage under a key; true if they are still staged afterwards and can be put again
+    private interface Staged {
+        boolean putAs(String key) throws IOException;
+    }
+
+    public FileMetadataService(UploadedFileRepository repo, FileBlobRepository blobs, FileStorage storage,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${files.upload.dir:/tmp/uploads}") String uploadDir,
+                               @Value("${storage.backend:local}") String storageBackend) {
+        this.repo = repo;
+        this.blobs = blobs;
+        this.storage = storage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.uploadDir = Paths.get(uploadDir);
+        this.localStorage = "local".equals(storageBackend);
+    }
+
+    /**
+     * Records an upload whose contents sit in the staging file {@code staged}
+     * and hash to {@code sha256}, computed by the caller while the bytes
+     * streamed in. The bytes are only handed to storage if no upload with the
+     * same contents exists yet. The staged file is consumed either way.
+     *
+     * If a delete of the last upload with these contents gets in between, the
+     * upload waits for their removal to finish, stores them again from the
+     * staged file and takes the reference once more.
+     */
+    public UploadedFile store(String name, Path staged, long size, String contentType, String sha256) throws IOException {
+        try {
+            return store(name, size, contentType, sha256, key -> {
+                storage.store(key, staged, contentType);
+                return false;
+            });
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    /**
+     * Like {@link #store(String, Path, long, String, String)} for contents
+     * already assembled in storage under {@code stagedKey}, e.g. by a chunked
+     * upload on S3. They are copied within storage rather than sent again,
+     * and the staged object is deleted afterwards.
+     */
+    public UploadedFile storeStaged(String name, String stagedKey, long size, String contentType, String sha256)
+            throws IOException {
+        try {
+            return store(name, size, contentType, sha256, key -> {
+                storage.copy(stagedKey, key);
+                return true;
+            });
+        } finally {
+            try {
+                storage.delete(stagedKey);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to delete staged upload {}: {}", stagedKey, e.getMessage());
+            }
+        }
+    }
+
+    private UploadedFile store(String name, long size, String contentType, String sha256, Staged staged)
+            throws IOException {
+        String hash = sha256.toLowerCase(Locale.ROOT);
+        String key = BLOB_PREFIX + hash;
+        try {
+            boolean restorable = true;
+            if (storage.stat(key).isEmpty()) {
+                restorable = staged.putAs(key);
+            } else {
+                log.info("Upload {} has the same contents as blob {}, not storing it again", name, hash);
+            }
+
+            UploadedFile file = new UploadedFile();
+            file.setName(name);
+            file.setSavedName(UUID.randomUUID().toString());
+            file.setStorageKey(key);
+            file.setSizeBytes(size);
+            file.setPath(storage.location(key));
+            file.setContentType(contentType);
+            file.setSha256(hash);
+            // Postgres keeps microseconds; truncating keeps cursors built from this instance exact
+            file.setUploadedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+            UploadedFile saved = record(file, hash, size);
+            if (saved != null) {
+                return saved;
+            }
+            awaitRemoval(hash);
+            if (storage.stat(key).isEmpty()) {
+                // The staged file already went into storage on the first attempt, nothing is left to put back
+                if (!restorable) {
+                    throw removedByConcurrentDelete(name);
+                }
+                log.info("Contents of upload {} were removed by a concurrent delete, storing them again", name);
+                staged.putAs(key);
+            }
+            saved = record(file, hash, size);
+            if (saved == null) {
+                throw removedByConcurrentDelete(name);
+            }
+            return saved;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Null, with nothing written, if the contents are claimed for removal or already gone
+    private UploadedFile record(UploadedFile file, String hash, long size) {
+        return transactionTemplate.execute(status -> {
+            // Nothing is acquired while a removal of these contents holds its claim; once we have the
+            // reference, no later removal can claim them until it is released
+            if (blobs.acquire(hash, size) == 0 || statUnchecked(file.getStorageKey()).isEmpty()) {
+                status.setRollbackOnly();
+                return null;
+            }
+            return repo.save(file);
+        });
+    }
+
+    private void awaitRemoval(String hash) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BLOB_REMOVAL_WAIT_MS);
+        while (blobs.isBeingRemoved(hash) && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the removal of blob " + hash);
+            }
+        }
+    }
+
+    private static IOException removedByConcurrentDelete(String name) {
+        return new IOException("Contents of " + name + " were removed by a concurrent delete, please retry the upload");
+    }
+
+    public Optional<UploadedFile> find(String savedName) {
+        return repo.findBySavedName(savedName);
+    }
+
+    /**
+     * Deletes the upload and, once that has committed, its stored contents if
+     * it was the last reference to them.
+     */
+    public boolean delete(String savedName) {
+        Removed removed = transactionTemplate.execute(status -> {
+            Optional<UploadedFile> found = repo.findBySavedName(savedName);
+            if (found.isEmpty()) {
+                return null;
+            }
+            UploadedFile file = found.get();
+            repo.delete(file);
+            String key = file.getStorageKey();
+            if (!key.startsWith(BLOB_PREFIX)) {
+                // Stored before content addressing, owned by this upload alone
+                return new Removed(key, true);
+            }
+            Integer remaining = blobs.release(key.substring(BLOB_PREFIX.length()));
+            if (remaining == null) {
+                log.warn("Upload {} points at {} but its file_blob row is missing or already unreferenced, "
+                        + "leaving its contents", savedName, key);
+                return new Removed(key, false);
+            }
+            return new Removed(key, remaining == 0);
+        });
+        if (removed == null) {
+            return false;
+        }
+        if (removed.lastReference()) {
+            String key = removed.storageKey();
+            try {
+                if (key.startsWith(BLOB_PREFIX)) {
+                    deleteBlobIfUnreferenced(key.substring(BLOB_PREFIX.length()));
+                } else {
+                    storage.delete(key);
+                }
+            } catch (IOException | RuntimeException e) {
+                // The upload is gone either way; an unreferenced blob is retried by the sweep
+                log.warn("Deleted upload {} but not its contents {}: {}", savedName, key, e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /** Removes blobs whose last reference was deleted but whose contents could not be removed at the time. */
+    @Scheduled(fixedDelayString = "${files.blob-sweep-interval-ms:600000}")
+    public void sweepUnreferencedBlobs() {
+        for (String hash : blobs.findUnreferenced(100)) {
+            try {
+                deleteBlobIfUnreferenced(hash);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to remove unreferenced blob {}: {}", hash, e.getMessage());
+            }
+        }
+    }
+
+    private void deleteBlobIfUnreferenced(String hash) throws IOException {
+        // Skip it if an upload took a new reference since or someone else is removing it
+        if (transactionTemplate.execute(status -> blobs.claimRemoval(hash, BLOB_REMOVAL_LEASE_MS)) == 0) {
+            return;
+        }
+        try {
+            storage.delete(BLOB_PREFIX + hash);
+        } catch (IOException | RuntimeException e) {
+            // The sweep retries the removal; until then uploads of these contents may reference them again
+            transactionTemplate.execute(status -> blobs.releaseRemovalClaim(hash));
+            throw e;
+        }
+        transactionTemplate.execute(status -> blobs.deleteRemoved(hash));
+        log.info("Deleted blob {} with its last reference", hash);
+    }
+
+    private Optional<FileStorage.StoredObject> statUnchecked(String key) {
+        try {
+            return storage.stat(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * One page of uploads, newest first. Pass the returned nextCursor back as
+     * cursor for the next page; it is null on the last page.
+     */
+    public Map<String, Object> list(String contentType, Instant from, Instant to, String cursor, int limit) {
+        int size = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        Instant beforeUploadedAt = null;
+        Long beforeId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            int sep = cursor.indexOf('_');
+            if (sep < 0) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            try {
+                long micros = Long.parseLong(cursor.substring(0, sep));
+                beforeUploadedAt = Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+                beforeId = Long.parseLong(cursor.substring(sep + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+        }
+        List<UploadedFile> files = repo.findPage(contentType, from, to, beforeUploadedAt, beforeId, size);
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("files", files);
+        page.put("nextCursor", files.size() == size ? cursorOf(files.get(files.size() - 1)) : null);
+        return page;
+    }
+
+    /** Indexes files that are on disk but have no row yet, e.g. uploads from before this table existed. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexUntrackedFiles() {
+        if (!localStorage || !Files.isDirectory(uploadDir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.list(uploadDir)) {
+            Set<String> known = new HashSet<>(repo.findAllStorageKeys());
+            List<UploadedFile> untracked = new ArrayList<>();
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String savedName = path.getFileName().toString();
+                if (savedName.startsWith(".") || savedName.startsWith(BLOB_PREFIX) || known.contains(savedName)
+                        || !Files.isRegularFile(path)) {
+                    continue;
+                }
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                UploadedFile file = new UploadedFile();
+                file.setSavedName(savedName);
+                file.setStorageKey(savedName);
+                // Legacy names are "<millis>_<original name>"
+                file.setName(savedName.replaceFirst("^\\d+_", ""));
+                file.setSizeBytes(attrs.size());
+                file.setPath(path.toString());
+                file.setContentType(Files.probeContentType(path));
+                file.setUploadedAt(attrs.lastModifiedTime().toInstant().truncatedTo(ChronoUnit.MICROS));
+                untracked.add(file);
+            }
+            if (!untracked.isEmpty()) {
+                repo.saveAll(untracked);
+                log.info("Indexed {} untracked files from {}", untracked.size(), uploadDir);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to index untracked files in {}: {}", uploadDir, e.getMessage());
+        }
+    }
+
+    private static String cursorOf(UploadedFile file) {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, file.getUploadedAt());
+        return micros + "_" + file.getId();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.multiaccount.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Where uploaded file contents live, selected with storage.backend:
+ * "local" keeps them under files.upload.dir on this replica, "s3" keeps them
+ * in an S3-compatible bucket (the MinIO from docker-compose) shared by all
+ * replicas.
+ */
+public interface FileStorage {
+
+    record StoredObject(long size, Instant lastModified) { }
+
+    /** Stores a finished local file under {@code key}; the source file is consumed. */
+    void store(String key, Path source, String contentType) throws IOException;
+
+    /** Stores exactly {@code size} bytes read from {@code in} under {@code key}. */
+    void store(String key, InputStream in, long size, String contentType) throws IOException;
+
+    /** Copies the object under {@code sourceKey} to {@code targetKey}, within the backend. */
+    void copy(String sourceKey, String targetKey) throws IOException;
+
+    Optional<StoredObject> stat(String key) throws IOException;
+
+    /** A stream positioned at {@code offset} with at least {@code length} bytes; callers stop after length. */
+    InputStream open(String key, long offset, long length) throws IOException;
+
+    /**
+     * The file on this machine's disk if the backend has one, so callers can
+     * use zero-copy transfers; null otherwise.
+     */
+    Path localPath(String key);
+
+    /** Human-readable location recorded with the metadata, e.g. a path or s3:// URI. */
+    String location(String key);
+
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,414 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.Item;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Read-through cache for items: near cache, then Redis, then the loader.
+ *
+ * Misses for the same id are coalesced per JVM, and a short Redis lock keeps
+ * other replicas from hitting the database for the same key at the same time.
+ * TTLs are jittered, and hot keys are refreshed in the background shortly
+ * before they expire (probabilistic early expiration, "XFetch").
+ */
+@Component
+public class ItemCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemCache.class);
+    private static final DefaultRedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    private static final long LOCK_POLL_MS = 20;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ItemNearCache nearCache;
+    private final SingleFlight<Long, Optional<Item>> loads = new SingleFlight<>();
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor refreshExecutor;
+
+    private final long ttlSeconds;
+    private final double ttlJitter;
+    private final double earlyRefreshBeta;
+    private final Duration lockTtl;
+    private final long lockWaitMs;
+
+    private final Counter redisHits;
+    private final Counter redisMisses;
+    private final Counter redisErrors;
+    private final Counter dbLoads;
+    private final Counter lockWaitHits;
+    private final Counter earlyRefreshes;
+    private final Timer redisGet;
+    private final Timer redisSet;
+    private final Timer loadTimer;
+    private volatile double loadTimeMs = 1.0;
+
+    public ItemCache(RedisTemplate<String, Object> redisTemplate,
+                     ItemNearCache nearCache,
+                     MeterRegistry meterRegistry,
+                     @Value("${cache.redis.ttl-seconds:3600}") long ttlSeconds,
+                     @Value("${cache.redis.ttl-jitter:0.1}") double ttlJitter,
+                     @Value("${cache.redis.early-refresh-beta:1.0}") double earlyRefreshBeta,
+                     @Value("${cache.redis.lock-ttl-ms:2000}") long lockTtlMs,
+                     @Value("${cache.redis.lock-wait-ms:200}") long lockWaitMs) {
+        this.redisTemplate = redisTemplate;
+        this.nearCache = nearCache;
+        this.ttlSeconds = ttlSeconds;
+        this.ttlJitter = ttlJitter;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.lockTtl = Duration.ofMillis(lockTtlMs);
+        this.lockWaitMs = lockWaitMs;
+        this.refreshExecutor = new ThreadPoolExecutor(1, 2, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(256), r -> {
+                    Thread t = new Thread(r, "item-cache-refresh");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        this.redisHits = meterRegistry.counter("item.cache.requests", "tier", "redis", "result", "hit");
+        this.redisMisses = meterRegistry.counter("item.cache.requests", "tier", "redis", "result", "miss");
+        this.redisErrors = meterRegistry.counter("item.cache.requests", "tier", "redis", "result", "error");
+        this.dbLoads = meterRegistry.counter("item.cache.loads", "outcome", "db");
+        this.lockWaitHits = meterRegistry.counter("item.cache.loads", "outcome", "lock_wait");
+        this.earlyRefreshes = meterRegistry.counter("item.cache.loads", "outcome", "early_refresh");
+        FunctionCounter.builder("item.cache.loads", loads, SingleFlight::getCoalesced)
+                .tag("outcome", "coalesced")
+                .register(meterRegistry);
+        this.redisGet = meterRegistry.timer("item.redis", "op", "get");
+        this.redisSet = meterRegistry.timer("item.redis", "op", "set");
+        this.loadTimer = meterRegistry.timer("item.cache.load");
+    }
+
+    public static String key(Long id) { return "item:" + id; }
+
+    public Optional<Item> get(Long id, Function<Long, Optional<Item>> loader) {
+        // Hot items are served from the in-process near cache without a Redis round trip
+        Item local = nearCache.get(id);
+        if (local != null) {
+            return Optional.of(local);
+        }
+
+        String key = key(id);
+        try {
+            // Value and remaining TTL in one round trip
+            List<Object> result = redisGet.record(() -> redisTemplate.executePipelined(getWithTtl(key)));
+            if (result.get(0) instanceof Item cached) {
+                log.debug("Cache HIT for: {}", key);
+                redisHits.increment();
+                nearCache.put(cached);
+                if (shouldRefreshEarly((Long) result.get(1))) {
+                    refreshAsync(id, loader);
+                }
+                return Optional.of(cached);
+            }
+            redisMisses.increment();
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("Redis unavailable, fetching {} from DB: {}", key, e.getMessage());
+        }
+
+        log.debug("Cache MISS for: {}", key);
+        return loads.run(id, () -> loadThrough(id, loader, false));
+    }
+
+    /** Writes a freshly saved item to Redis and the near cache. */
+    public void put(Item item) {
+        String key = key(item.getId());
+        try {
+            redisSet.record(() -> redisTemplate.opsForValue().set(key, item, ttlSeconds(), TimeUnit.SECONDS));
+            log.debug("Cached item in Redis: {}", key);
+        } catch (Exception e) {
+            log.warn("Redis unavailable, skipping cache for {}: {}", key, e.getMessage());
+        }
+        nearCache.refresh(item);
+    }
+
+    /**
+     * Looks up many items at once: near cache, then a single MGET, then one
+     * loader call for whatever is still missing. The result keeps the order of
+     * {@code ids} and leaves out ids that do not exist.
+     */
+    public Map<Long, Item> getAll(List<Long> ids, Function<Collection<Long>, List<Item>> loader) {
+        Map<Long, Item> found = new LinkedHashMap<>();
+        List<Long> remaining = new ArrayList<>();
+        for (Long id : ids) {
+            Item local = nearCache.get(id);
+            if (local != null) {
+                found.put(id, local);
+            } else {
+                remaining.add(id);
+            }
+        }
+
+        if (!remaining.isEmpty()) {
+            try {
+                List<String> keys = remaining.stream().map(ItemCache::key).toList();
+                List<Object> values = redisGet.record(() -> redisTemplate.opsForValue().multiGet(keys));
+                List<Long> missing = new ArrayList<>();
+                for (int i = 0; i < remaining.size(); i++) {
+                    if (values != null && values.get(i) instanceof Item cached) {
+                        redisHits.increment();
+                        nearCache.put(cached);
+                        found.put(remaining.get(i), cached);
+                    } else {
+                        redisMisses.increment();
+                        missing.add(remaining.get(i));
+                    }
+                }
+                remaining = missing;
+            } catch (Exception e) {
+                redisErrors.increment();
+                log.warn("Redis unavailable, fetching {} items from DB: {}", remaining.size(), e.getMessage());
+            }
+        }
+
+        if (!remaining.isEmpty()) {
+            long start = System.nanoTime();
+            List<Item> loaded = loader.apply(remaining);
+            recordLoadTime(System.nanoTime() - start);
+            dbLoads.increment(loaded.size());
+            loaded.forEach(nearCache::put);
+            writeAll(loaded);
+            loaded.forEach(item -> found.put(item.getId(), item));
+        }
+
+        Map<Long, Item> ordered = new LinkedHashMap<>();
+        for (Long id : ids) {
+            Item item = found.get(id);
+            if (item != null) {
+                ordered.put(id, item);
+            }
+        }
+        return ordered;
+    }
+
+    /** Writes freshly saved items to Redis in one pipelined round trip and refreshes the near cache. */
+    public void putAll(List<Item> items) {
+        writeAll(items);
+        nearCache.refreshAll(items);
+    }
+
+    /**
+     * Writes items to Redis only, in one pipelined round trip with jittered
+     * TTLs. Returns false if Redis could not be reached.
+     */
+    public boolean preload(List<Item> items) {
+        return writeAll(items);
+    }
+
+    /** How many of the ids have an entry in Redis, in one EXISTS call; 0 if Redis is unavailable. */
+    public long countCached(Collection<Long> ids) {
+        try {
+            Long count = redisTemplate.countExistingKeys(ids.stream().map(ItemCache::key).toList());
+            return count != null ? count : 0;
+        } catch (Exception e) {
+            log.debug("Redis unavailable, treating {} items as uncached: {}", ids.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        double hits = redisHits.count();
+        double misses = redisMisses.count();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("redisHits", (long) hits);
+        stats.put("redisMisses", (long) misses);
+        stats.put("redisErrors", (long) redisErrors.count());
+        stats.put("redisHitRate", hits + misses > 0 ? hits / (hits + misses) : 0.0);
+        stats.put("nearCacheSize", nearCache.size());
+        stats.put("nearHitRate", nearCache.hitRate());
+        stats.put("dbLoads", (long) dbLoads.count());
+        stats.put("coalescedLoads", loads.getCoalesced());
+        stats.put("lockWaitHits", (long) lockWaitHits.count());
+        stats.put("earlyRefreshes", (long) earlyRefreshes.count());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private Optional<Item> loadThrough(Long id, Function<Long, Optional<Item>> loader, boolean refresh) {
+        String key = key(id);
+        String lockKey = "lock:" + key;
+        String token = UUID.randomUUID().toString();
+        boolean locked = tryLock(lockKey, token);
+        try {
+            if (!locked) {
+                // Another replica is loading this key; a background refresh just gives way
+                if (refresh) {
+                    return Optional.empty();
+                }
+                Item loaded = awaitOtherLoader(key);
+                if (loaded != null) {
+                    lockWaitHits.increment();
+                    nearCache.put(loaded);
+                    return Optional.of(loaded);
+                }
+            }
+
+            long start = System.nanoTime();
+            Optional<Item> item = loader.apply(id);
+            recordLoadTime(System.nanoTime() - start);
+            dbLoads.increment();
+
+            item.ifPresent(i -> {
+                nearCache.put(i);
+                try {
+                    redisSet.record(() -> redisTemplate.opsForValue().set(key, i, ttlSeconds(), TimeUnit.SECONDS));
+                } catch (Exception e) {
+                    log.warn("Failed to cache {}: {}", key, e.getMessage());
+                }
+            });
+            return item;
+        } finally {
+            if (locked) {
+                unlock(lockKey, token);
+            }
+        }
+    }
+
+    private boolean writeAll(List<Item> items) {
+        if (items.isEmpty()) {
+            return true;
+        }
+        try {
+            redisSet.record(() -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (Item item : items) {
+                        ops.opsForValue().set(key(item.getId()), item, ttlSeconds(), TimeUnit.SECONDS);
+                    }
+                    return null;
+                }
+            }));
+            return true;
+        } catch (Exception e) {
+            log.warn("Redis unavailable, skipping cache for {} items: {}", items.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void refreshAsync(Long id, Function<Long, Optional<Item>> loader) {
+        if (!refreshing.add(id)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    if (loadThrough(id, loader, true).isPresent()) {
+                        earlyRefreshes.increment();
+                    }
+                } catch (Exception e) {
+                    log.warn("Early refresh failed for item {}: {}", id, e.getMessage());
+                } finally {
+                    refreshing.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(id);
+        }
+    }
+
+    /**
+     * XFetch: refresh early with a probability that grows as the remaining TTL
+     * approaches the time it takes to reload the value.
+     */
+    private boolean shouldRefreshEarly(Long ttlMs) {
+        if (ttlMs == null || ttlMs < 0) {
+            return false;
+        }
+        double gap = -loadTimeMs * earlyRefreshBeta * Math.log(1.0 - ThreadLocalRandom.current().nextDouble());
+        return gap >= ttlMs;
+    }
+
+    private void recordLoadTime(long nanos) {
+        loadTimer.record(nanos, TimeUnit.NANOSECONDS);
+        loadTimeMs = 0.8 * loadTimeMs + 0.2 * (nanos / 1_000_000.0);
+    }
+
+    long ttlSeconds() {
+        double jitter = (ThreadLocalRandom.current().nextDouble() * 2 - 1) * ttlJitter;
+        return Math.max(1, Math.round(ttlSeconds * (1 + jitter)));
+    }
+
+    private boolean tryLock(String lockKey, String token) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, token, lockTtl));
+        } catch (Exception e) {
+            // Without Redis there is nobody to coordinate with; load directly
+            return true;
+        }
+    }
+
+    private void unlock(String lockKey, String token) {
+        try {
+            redisTemplate.execute(RELEASE_LOCK, List.of(lockKey), token);
+        } catch (Exception e) {
+            log.debug("Failed to release {}: {}", lockKey, e.getMessage());
+        }
+    }
+
+    private Item awaitOtherLoader(String key) {
+        long deadline = System.currentTimeMillis() + lockWaitMs;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                Thread.sleep(LOCK_POLL_MS);
+                if (redisTemplate.opsForValue().get(key) instanceof Item item) {
+                    return item;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("Gave up waiting for {}: {}", key, e.getMessage());
+        }
+        return null;
+    }
+
+    private static SessionCallback<Object> getWithTtl(String key) {
+        return new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.opsForValue().get(key);
+                ops.getExpire(key, TimeUnit.MILLISECONDS);
+                return null;
+            }
+        };
+    }
+}
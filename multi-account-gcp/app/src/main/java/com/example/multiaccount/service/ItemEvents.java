@@ -0,0 +1,46 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.Item;
+import com.example.multiaccount.model.OutboxEvent;
+import com.example.multiaccount.repo.OutboxRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Entry point for item events. With the outbox enabled (the default) events
+ * are only inserted into item_outbox, in the caller's transaction, and
+ * {@link OutboxRelay} delivers them; otherwise they go straight to
+ * {@link EventPublisher}. The events of one call share a trace id.
+ */
+@Component
+public class ItemEvents {
+
+    private final OutboxRepository outbox;
+    private final EventPublisher publisher;
+    private final boolean outboxEnabled;
+
+    public ItemEvents(OutboxRepository outbox, EventPublisher publisher,
+                      @Value("${events.outbox.enabled:true}") boolean outboxEnabled) {
+        this.outbox = outbox;
+        this.publisher = publisher;
+        this.outboxEnabled = outboxEnabled;
+    }
+
+    public void publish(String topic, Item item) {
+        publishAll(topic, List.of(item));
+    }
+
+    public void publishAll(String topic, List<Item> items) {
+        if (outboxEnabled) {
+            UUID traceId = UUID.randomUUID();
+            outbox.saveAll(items.stream().map(item -> new OutboxEvent(topic, item.getId(), traceId)).toList());
+        } else if (items.size() == 1) {
+            publisher.publish(topic, items.get(0));
+        } else {
+            publisher.publishAll(topic, items);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.Item;
+import com.example.multiaccount.repo.ItemRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the whole item table to an output stream row by row, so memory use
+ * does not grow with the size of the table.
+ */
+@Service
+public class ItemExportService {
+
+    public enum Format { NDJSON, CSV }
+
+    private final ItemRepository repo;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public ItemExportService(ItemRepository repo, ObjectMapper objectMapper,
+                             @Value("${data.export.fetch-size:1000}") int fetchSize) {
+        this.repo = repo;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    @Transactional(readOnly = true)
+    public void export(Format format, boolean gzip, OutputStream target) throws IOException {
+        OutputStream out = gzip ? new GZIPOutputStream(target, 64 * 1024) : new BufferedOutputStream(target, 64 * 1024);
+        try {
+            if (format == Format.CSV) {
+                out.write("id,name,description,created_at\n".getBytes(StandardCharsets.UTF_8));
+            }
+            repo.streamAll(fetchSize, item -> {
+                try {
+                    if (format == Format.CSV) {
+                        out.write(toCsv(item).getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        out.write(objectMapper.writeValueAsBytes(item));
+                        out.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (out instanceof GZIPOutputStream gz) {
+            gz.finish();
+        }
+        out.flush();
+    }
+
+    private static String toCsv(Item item) {
+        return item.getId() + ","
+                + csvField(item.getName()) + ","
+                + csvField(item.getDescription()) + ","
+                + (item.getCreatedAt() != null ? item.getCreatedAt() : "") + "\n";
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.Item;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bounded in-process cache in front of Redis for hot items.
+ *
+ * Entries are evicted by size (Caffeine's W-TinyLFU policy) and expire after a
+ * short TTL. Writes on one replica are broadcast on a Redis pub/sub channel so
+ * that every other replica drops its local copy and re-reads from Redis.
+ */
+@Component
+public class ItemNearCache implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemNearCache.class);
+    private static final String INVALIDATION_CHANNEL = "item:invalidate";
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Cache<Long, Item> cache;
+    private final boolean enabled;
+
+    public ItemNearCache(RedisTemplate<String, Object> redisTemplate,
+                         RedisMessageListenerContainer listenerContainer,
+                         MeterRegistry meterRegistry,
+                         @Value("${cache.near.enabled:true}") boolean enabled,
+                         @Value("${cache.near.max-size:10000}") long maxSize,
+                         @Value("${cache.near.ttl-seconds:30}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        if (enabled) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "item.near");
+            listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+            log.info("Item near cache enabled (maxSize={}, ttl={}s)", maxSize, ttlSeconds);
+        }
+    }
+
+    public Item get(Long id) {
+        return enabled ? cache.getIfPresent(id) : null;
+    }
+
+    public long size() {
+        return enabled ? cache.estimatedSize() : 0;
+    }
+
+    public double hitRate() {
+        return cache.stats().hitRate();
+    }
+
+    /** Ids of up to {@code limit} cached items, most frequently read first. */
+    public List<Long> hottest(int limit) {
+        if (!enabled) {
+            return List.of();
+        }
+        return cache.policy().eviction()
+                .map(eviction -> List.copyOf(eviction.hottest(limit).keySet()))
+                .orElse(List.of());
+    }
+
+    public void put(Item item) {
+        if (enabled && item.getId() != null) {
+            cache.put(item.getId(), item);
+        }
+    }
+
+    /**
+     * Stores the freshly written item locally and tells the other replicas to
+     * drop whatever copy they hold.
+     */
+    public void refresh(Item item) {
+        refreshAll(List.of(item));
+    }
+
+    public void refreshAll(Collection<Item> items) {
+        if (!enabled || items.isEmpty()) {
+            return;
+        }
+        items.forEach(this::put);
+        try {
+            byte[] channel = INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Item item : items) {
+                    connection.publish(channel, (instanceId + ":" + item.getId()).getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to broadcast near cache invalidation for {} items: {}", items.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int sep = body.lastIndexOf(':');
+        if (sep < 0 || instanceId.equals(body.substring(0, sep))) {
+            return;
+        }
+        try {
+            cache.invalidate(Long.valueOf(body.substring(sep + 1)));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed near cache invalidation: {}", body);
+        }
+    }
+}
@@ -2,89 +2,147 @@ package com.example.multiaccount.service;
 
 import com.example.multiaccount.model.Item;
 import com.example.multiaccount.repo.ItemRepository;
-import org.springframework.data.redis.core.RedisTemplate;
+import com.example.multiaccount.repo.ItemRepositoryCustom;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 
 @Service
 public class ItemService {
     private final ItemRepository repo;
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final EventPublisher publisher;
+    private final ItemCache cache;
+    private final ItemEvents events;
+    private final Timer dbFind;
+    private final Timer dbSave;
+    private final Timer dbSearch;
 
-    public ItemService(ItemRepository repo, RedisTemplate<String, Object> redisTemplate, EventPublisher publisher) {
+    public ItemService(ItemRepository repo, ItemCache cache, ItemEvents events, MeterRegistry meterRegistry) {
         this.repo = repo;
-        this.redisTemplate = redisTemplate;
-        this.publisher = publisher;
+        this.cache = cache;
+        this.events = events;
+        this.dbFind = meterRegistry.timer("item.db", "op", "find");
+        this.dbSave = meterRegistry.timer("item.db", "op", "save");
+        this.dbSearch = meterRegistry.timer("item.db", "op", "search");
     }
 
     @Transactional
     public Item create(Item item) {
         item.setCreatedAt(Instant.now());
-        Item saved = repo.save(item);
-        // publish event (using RabbitMQ in local compose)
-        publisher.publish("item.created", saved);
-        // Store full item object in Redis cache with 1 hour expiry
-        try {
-            String key = cacheKey(saved.getId());
-            redisTemplate.opsForValue().set(key, saved, 1, TimeUnit.HOURS);
-            System.out.println("✅ Cached item in Redis: " + key);
-        } catch (Exception e) {
-            System.out.println("⚠️ Redis unavailable, skipping cache: " + e.getMessage());
-        }
+        // A version in the request body would make Spring Data treat the item as existing
+        item.setVersion(null);
+        Item saved = dbSave.record(() -> repo.save(item));
+        // record the event in the outbox, relayed to RabbitMQ after commit
+        events.publish("item.created", saved);
+        // Store full item object in Redis cache with a jittered 1 hour expiry, once the row is committed
+        afterCommit(() -> cache.put(saved));
+        return saved;
+    }
+
+    /**
+     * Inserts all items in one transaction. Sequence ids are pre-allocated, so
+     * Hibernate sends the rows as JDBC batches instead of one INSERT each.
+     */
+    @Transactional
+    public List<Item> createAll(List<Item> items) {
+        Instant now = Instant.now();
+        items.forEach(item -> {
+            item.setCreatedAt(now);
+            item.setVersion(null);
+        });
+        List<Item> saved = dbSave.record(() -> repo.saveAll(items));
+        events.publishAll("item.created", saved);
+        afterCommit(() -> cache.putAll(saved));
         return saved;
     }
 
     public Optional<Item> get(Long id) {
-        String key = cacheKey(id);
-        try {
-            // Try to get full Item object from Redis cache
-            Object cached = redisTemplate.opsForValue().get(key);
-            if (cached != null && cached instanceof Item) {
-                System.out.println("✅ Cache HIT for: " + key);
-                return Optional.of((Item) cached);
-            }
-        } catch (Exception e) {
-            System.out.println("⚠️ Redis unavailable, fetching from DB: " + e.getMessage());
+        // Near cache, then Redis, then a single coalesced DB load per key
+        return cache.get(id, key -> dbFind.record(() -> repo.findById(key)));
+    }
+
+    /** Returns the items that exist, in the order of {@code ids}. */
+    public List<Item> getAll(List<Long> ids) {
+        return new ArrayList<>(cache.getAll(ids, missing -> dbFind.record(() -> repo.findAllById(missing))).values());
+    }
+
+    /**
+     * One page of full-text matches straight from Postgres (the GIN index on
+     * item.search), so results always reflect committed updates. {@code cursor}
+     * is null for the first page.
+     */
+    public List<ItemRepositoryCustom.SearchHit> search(String query, SearchCursor cursor, int limit) {
+        return dbSearch.record(() -> cursor == null
+                ? repo.search(query, null, null, limit)
+                : repo.search(query, cursor.rank(), cursor.id(), limit));
+    }
+
+    /**
+     * Position after the last hit of a search page, passed to clients as an
+     * opaque URL-safe token.
+     */
+    public record SearchCursor(float rank, long id) {
+
+        public static SearchCursor after(ItemRepositoryCustom.SearchHit hit) {
+            return new SearchCursor(hit.rank(), hit.item().getId());
         }
-        
-        // Cache miss - fetch from database and cache it
-        System.out.println("❌ Cache MISS for: " + key);
-        Optional<Item> item = repo.findById(id);
-        item.ifPresent(i -> {
-            try {
-                redisTemplate.opsForValue().set(key, i, 1, TimeUnit.HOURS);
-                System.out.println("✅ Cached item from DB: " + key);
-            } catch (Exception e) {
-                System.out.println("⚠️ Failed to cache: " + e.getMessage());
+
+        /** @throws IllegalArgumentException if the token was not produced by {@link #encode()} */
+        public static SearchCursor decode(String token) {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII).split(":", -1);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed search cursor");
             }
-        });
-        return item;
+            // Float bits rather than decimal text, so the rank compares exactly equal in SQL
+            return new SearchCursor(Float.intBitsToFloat(Integer.parseInt(parts[0])), Long.parseLong(parts[1]));
+        }
+
+        public String encode() {
+            String raw = Float.floatToIntBits(rank) + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+        }
     }
 
+    /**
+     * Applies name and description in a single UPDATE ... RETURNING instead of
+     * a read-modify-write, bumping the version. With {@code expectedVersion}
+     * set the update only applies if the row is still at that version; the
+     * returned row refreshes Redis without another read.
+     */
     @Transactional
-    public Item update(Long id, Item upd) {
-        Item exist = repo.findById(id).orElseThrow();
-        exist.setName(upd.getName());
-        exist.setDescription(upd.getDescription());
-        Item saved = repo.save(exist);
-        
-        // Update cache with new data
-        try {
-            String key = cacheKey(id);
-            redisTemplate.opsForValue().set(key, saved, 1, TimeUnit.HOURS);
-            System.out.println("✅ Updated cache for: " + key);
-        } catch (Exception e) {
-            System.out.println("⚠️ Redis unavailable, skipping cache update: " + e.getMessage());
+    public Item update(Long id, Item upd, Long expectedVersion) {
+        Optional<Item> updated = dbSave.record(
+                () -> repo.updateReturning(id, upd.getName(), upd.getDescription(), expectedVersion));
+        if (updated.isEmpty()) {
+            // Only the failure path pays for a second query, to tell a missing item from a stale version
+            Long current = repo.findVersion(id).orElseThrow();
+            throw new OptimisticLockingFailureException(
+                    "Item " + id + " is at version " + current + ", not " + expectedVersion);
         }
-        
-        publisher.publish("item.updated", saved);
+        Item saved = updated.get();
+        afterCommit(() -> cache.put(saved));
+        events.publish("item.updated", saved);
         return saved;
     }
 
-    private String cacheKey(Long id) { return "item:" + id; }
+    // Redis and the near-cache broadcast are not part of the transaction. Writing them before commit would
+    // leave readers served a row that a failed commit then discards.
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 }
@@ -0,0 +1,86 @@
+package com.example.multiaccount.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+/** Keeps files in files.upload.dir on the local disk of this replica. */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalFileStorage implements FileStorage {
+
+    private final Path root;
+
+    public LocalFileStorage(@Value("${files.upload.dir:/tmp/uploads}") String uploadDir) throws IOException {
+        this.root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+    }
+
+    @Override
+    public void store(String key, Path source, String contentType) throws IOException {
+        // Staging files live under the same root, so this is a rename
+        Files.move(source, resolve(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void store(String key, InputStream in, long size, String contentType) throws IOException {
+        Files.copy(in, resolve(key), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        Files.copy(resolve(sourceKey), resolve(targetKey), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        Path file = resolve(key);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return Optional.of(new StoredObject(attrs.size(), attrs.lastModifiedTime().toInstant()));
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        return Channels.newInputStream(channel.position(offset));
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return resolve(key);
+    }
+
+    @Override
+    public String location(String key) {
+        return resolve(key).toString();
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    private Path resolve(String key) {
+        Path file = root.resolve(key).normalize();
+        if (!root.equals(file.getParent())) {
+            throw new IllegalArgumentException("Invalid file name: " + key);
+        }
+        return file;
+    }
+}
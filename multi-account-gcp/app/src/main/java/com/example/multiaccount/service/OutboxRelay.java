@@ -0,0 +1,88 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.OutboxEvent;
+import com.example.multiaccount.repo.OutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Drains item_outbox to RabbitMQ. Each batch is claimed (leased) in a short
+ * transaction, published with publisher confirms outside any transaction, and
+ * deleted in a second short transaction, so a slow broker never holds a row
+ * lock or a pooled connection. If the broker does not confirm the batch its
+ * claims are released and the rows retried on the next run; if the relay dies
+ * mid-publish they are claimed again once the lease runs out. Delivery is
+ * at-least-once.
+ *
+ * A run stops after max-batches-per-run batches even if more are waiting, so
+ * a backlog cannot keep a scheduler thread busy indefinitely; the next run
+ * picks up where it left off.
+ */
+@Component
+@ConditionalOnProperty(name = "events.outbox.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxRepository outbox;
+    private final EventPublisher publisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long claimLeaseMs;
+    private final int maxBatchesPerRun;
+
+    public OutboxRelay(OutboxRepository outbox, EventPublisher publisher, PlatformTransactionManager transactionManager,
+                       @Value("${events.outbox.batch-size:500}") int batchSize,
+                       @Value("${events.outbox.claim-lease-ms:30000}") long claimLeaseMs,
+                       @Value("${events.outbox.max-batches-per-run:20}") int maxBatchesPerRun,
+                       @Value("${events.confirm-timeout-ms:5000}") long confirmTimeoutMs) {
+        if (claimLeaseMs <= confirmTimeoutMs) {
+            // A lease shorter than the confirm wait would let another replica publish the same rows again
+            throw new IllegalArgumentException("events.outbox.claim-lease-ms (" + claimLeaseMs
+                    + ") must be longer than events.confirm-timeout-ms (" + confirmTimeoutMs + ")");
+        }
+        this.outbox = outbox;
+        this.publisher = publisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.claimLeaseMs = claimLeaseMs;
+        this.maxBatchesPerRun = Math.max(maxBatchesPerRun, 1);
+    }
+
+    @Scheduled(fixedDelayString = "${events.outbox.poll-interval-ms:200}")
+    public void relay() {
+        try {
+            int batches = 0;
+            int relayed;
+            do {
+                relayed = relayBatch();
+            } while (relayed == batchSize && ++batches < maxBatchesPerRun);
+        } catch (Exception e) {
+            log.warn("Outbox relay failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> batch = transactionTemplate.execute(status -> outbox.claimBatch(batchSize, claimLeaseMs));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = batch.stream().map(OutboxEvent::getId).toList();
+        try {
+            publisher.publishConfirmed(batch);
+        } catch (RuntimeException e) {
+            transactionTemplate.executeWithoutResult(status -> outbox.releaseClaims(ids));
+            throw e;
+        }
+        transactionTemplate.executeWithoutResult(status -> outbox.deleteAllByIdInBatch(ids));
+        return batch.size();
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.Item;
+import com.example.multiaccount.repo.ReactiveItemRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Non-blocking counterpart of {@link ItemService#get} and {@link ItemService#getAll}
+ * for the /v2 endpoints: near cache, then Redis through reactive Lettuce
+ * commands, then Postgres over R2DBC. No thread waits on either round trip.
+ *
+ * Entries use the same item:{id} keys, value format and jittered TTL as
+ * {@link ItemCache}, so both paths read each other's writes, and the meters
+ * are the same ones, so /v1/status/cache covers both. Misses are coalesced
+ * per JVM; unlike the blocking path there is no cross-replica load lock or
+ * early refresh, the /v1 reads keep hot keys fresh.
+ */
+@Service
+public class ReactiveItemService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveItemService.class);
+
+    private final ReactiveItemRepository repo;
+    private final ReactiveRedisTemplate<String, Object> redis;
+    private final ItemNearCache nearCache;
+    private final ItemCache cache;
+    private final ConcurrentMap<Long, Mono<Item>> loads = new ConcurrentHashMap<>();
+
+    private final Counter redisHits;
+    private final Counter redisMisses;
+    private final Counter redisErrors;
+    private final Counter dbLoads;
+    private final Timer redisGet;
+    private final Timer redisSet;
+    private final Timer dbFind;
+
+    public ReactiveItemService(ReactiveItemRepository repo, ReactiveRedisTemplate<String, Object> redis,
+                               ItemNearCache nearCache, ItemCache cache, MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.redis = redis;
+        this.nearCache = nearCache;
+        this.cache = cache;
+        this.redisHits = meterRegistry.counter("item.cache.requests", "tier", "redis", "result", "hit");
+        this.redisMisses = meterRegistry.counter("item.cache.requests", "tier", "redis", "result", "miss");
+        this.redisErrors = meterRegistry.counter("item.cache.requests", "tier", "redis", "result", "error");
+        this.dbLoads = meterRegistry.counter("item.cache.loads", "outcome", "db");
+        this.redisGet = meterRegistry.timer("item.redis", "op", "get");
+        this.redisSet = meterRegistry.timer("item.redis", "op", "set");
+        this.dbFind = meterRegistry.timer("item.db", "op", "find");
+    }
+
+    public Mono<Item> get(Long id) {
+        Item local = nearCache.get(id);
+        if (local != null) {
+            return Mono.just(local);
+        }
+        String key = ItemCache.key(id);
+        Mono<Item> cached = timed(redis.opsForValue().get(key), redisGet)
+                .ofType(Item.class)
+                .doOnNext(item -> {
+                    redisHits.increment();
+                    nearCache.put(item);
+                })
+                .doOnSuccess(item -> {
+                    if (item == null) {
+                        redisMisses.increment();
+                    }
+                })
+                .onErrorResume(e -> {
+                    redisErrors.increment();
+                    log.warn("Redis unavailable, fetching {} from DB: {}", key, e.getMessage());
+                    return Mono.empty();
+                });
+        return cached.switchIfEmpty(Mono.defer(() -> load(id)));
+    }
+
+    /** Returns the items that exist, in the order of {@code ids}. */
+    public Mono<List<Item>> getAll(List<Long> ids) {
+        Map<Long, Item> found = new HashMap<>();
+        List<Long> remaining = new ArrayList<>();
+        for (Long id : ids) {
+            Item local = nearCache.get(id);
+            if (local != null) {
+                found.put(id, local);
+            } else {
+                remaining.add(id);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return Mono.just(inOrder(ids, found));
+        }
+
+        List<String> keys = remaining.stream().map(ItemCache::key).toList();
+        return timed(redis.opsForValue().multiGet(keys), redisGet)
+                .map(values -> {
+                    List<Long> missing = new ArrayList<>();
+                    for (int i = 0; i < remaining.size(); i++) {
+                        if (values.get(i) instanceof Item item) {
+                            redisHits.increment();
+                            nearCache.put(item);
+                            found.put(item.getId(), item);
+                        } else {
+                            redisMisses.increment();
+                            missing.add(remaining.get(i));
+                        }
+                    }
+                    return missing;
+                })
+                .onErrorResume(e -> {
+                    redisErrors.increment();
+                    log.warn("Redis unavailable, fetching {} items from DB: {}", remaining.size(), e.getMessage());
+                    return Mono.just(remaining);
+                })
+                .flatMap(missing -> missing.isEmpty()
+                        ? Mono.just(List.<Item>of())
+                        : timed(repo.findAllById(missing).collectList(), dbFind))
+                .flatMap(loaded -> {
+                    dbLoads.increment(loaded.size());
+                    loaded.forEach(item -> {
+                        nearCache.put(item);
+                        found.put(item.getId(), item);
+                    });
+                    // Concurrent commands on the shared connection go out pipelined
+                    return Flux.fromIterable(loaded).flatMap(this::write).then();
+                })
+                .then(Mono.fromSupplier(() -> inOrder(ids, found)));
+    }
+
+    // One database read per id at a time; concurrent misses share it
+    private Mono<Item> load(Long id) {
+        return loads.computeIfAbsent(id, key -> timed(repo.findById(key), dbFind)
+                .flatMap(item -> {
+                    dbLoads.increment();
+                    nearCache.put(item);
+                    return write(item).thenReturn(item);
+                })
+                .doFinally(signal -> loads.remove(key))
+                .cache());
+    }
+
+    private Mono<Void> write(Item item) {
+        String key = ItemCache.key(item.getId());
+        return timed(redis.opsForValue().set(key, item, Duration.ofSeconds(cache.ttlSeconds())), redisSet)
+                .onErrorResume(e -> {
+                    log.warn("Failed to cache {}: {}", key, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static <T> Mono<T> timed(Mono<T> source, Timer timer) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return source.doFinally(signal -> sample.stop(timer));
+        });
+    }
+
+    private static List<Item> inOrder(List<Long> ids, Map<Long, Item> found) {
+        List<Item> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Item item = found.get(id);
+            if (item != null) {
+                ordered.add(item);
+            }
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.repo.UploadSessionRepository;
+import com.example.multiaccount.repo.UploadSessionRepository.Part;
+import com.example.multiaccount.repo.UploadSessionRepository.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Chunked uploads with storage.backend=s3, shared by every replica.
+ *
+ * Each session is one S3 multipart upload to a staging key, and each chunk is
+ * streamed from the request straight to S3 as one part, so no replica holds
+ * any of the bytes. The session and the ETags of its received parts are kept
+ * in upload_session and upload_session_part; any replica can take any chunk,
+ * status or complete request of an upload. The CRC32C of a chunk is computed
+ * while it streams, and a chunk is only recorded once it matched; a chunk
+ * sent again replaces its part.
+ *
+ * Complete claims the session by deleting it, in a transaction that holds
+ * the session row against new parts, so only one request can complete an
+ * upload. The parts are then assembled and the result is read back once to
+ * compute its SHA-256. Sessions idle for files.upload.session-ttl-minutes are
+ * deleted with their multipart upload. Staged objects or parts left behind by
+ * a replica that died mid-request are not tracked; a bucket lifecycle rule on
+ * the "partial/" prefix and on incomplete multipart uploads removes them.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+public class S3ChunkedUploadService implements ChunkedUploads {
+
+    private static final Logger log = LoggerFactory.getLogger(S3ChunkedUploadService.class);
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final String STAGING_PREFIX = "partial/";
+    private static final int EXPIRY_BATCH_SIZE = 100;
+
+    private record Claimed(Session session, List<Part> parts) { }
+
+    private final UploadSessionRepository sessions;
+    private final S3FileStorage storage;
+    private final TransactionTemplate transactionTemplate;
+    private final int defaultChunkSize;
+    private final long maxSize;
+    private final long sessionTtlMs;
+
+    public S3ChunkedUploadService(UploadSessionRepository sessions, S3FileStorage storage,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${files.upload.chunk-size:8388608}") int defaultChunkSize,
+                                  @Value("${files.upload.max-size:10737418240}") long maxSize,
+                                  @Value("${files.upload.session-ttl-minutes:1440}") long sessionTtlMinutes) {
+        this.sessions = sessions;
+        this.storage = storage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultChunkSize = defaultChunkSize;
+        this.maxSize = maxSize;
+        this.sessionTtlMs = TimeUnit.MINUTES.toMillis(sessionTtlMinutes);
+    }
+
+    /**
+     * Chunks are at least 5 MiB, the smallest part S3 accepts, and grow past
+     * 64 MiB when a file would otherwise need more than 10,000 parts.
+     */
+    @Override
+    public Map<String, Object> init(String filename, long size, String contentType, Integer chunkSize) throws IOException {
+        ChunkedUploadService.checkNewUpload(filename, size, maxSize);
+        long requested = chunkSize != null ? chunkSize : defaultChunkSize;
+        long effectiveChunkSize = Math.min(Math.max(requested, S3FileStorage.MIN_PART_SIZE), MAX_CHUNK_SIZE);
+        effectiveChunkSize = Math.max(effectiveChunkSize, (size + S3FileStorage.MAX_PARTS - 1) / S3FileStorage.MAX_PARTS);
+        if (effectiveChunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Size is too large for " + S3FileStorage.MAX_PARTS + " chunks");
+        }
+        int chunkCount = (int) ((size + effectiveChunkSize - 1) / effectiveChunkSize);
+        String uploadId = UUID.randomUUID().toString();
+        String stagingKey = STAGING_PREFIX + uploadId;
+        // S3 cannot complete a multipart upload without parts, so an empty file is stored as it is on complete
+        String multipartUploadId = size > 0 ? storage.startMultipartUpload(stagingKey, contentType) : null;
+        Session session = new Session(uploadId, filename, contentType, size, (int) effectiveChunkSize, chunkCount,
+                stagingKey, multipartUploadId);
+        try {
+            sessions.insert(session);
+        } catch (RuntimeException e) {
+            abortMultipartUpload(session);
+            throw e;
+        }
+        log.info("Started chunked upload {} for {} ({} bytes, {} chunks)", uploadId, filename, size, chunkCount);
+        return status(session, List.of());
+    }
+
+    @Override
+    public Map<String, Object> status(String uploadId) {
+        return status(session(uploadId), sessions.findParts(uploadId));
+    }
+
+    /**
+     * Streams one chunk to S3 as its part. Returns false without reading the
+     * body if the chunk was already received.
+     */
+    @Override
+    public boolean writeChunk(String uploadId, int index, long contentLength, String expectedCrc32c,
+                              InputStream body) throws IOException {
+        Session session = session(uploadId);
+        long length = ChunkedUploadService.chunkLength(index, contentLength, session.size(), session.chunkSize(),
+                session.chunkCount());
+        int partNumber = index + 1;
+        if (sessions.hasPart(uploadId, partNumber)) {
+            return false;
+        }
+
+        CRC32C crc = new CRC32C();
+        CountingInputStream in = new CountingInputStream(new CheckedInputStream(body, crc));
+        String etag = null;
+        IOException failure = null;
+        try {
+            etag = storage.putPart(session.stagingKey(), session.multipartUploadId(), partNumber, in, length);
+        } catch (IOException e) {
+            failure = e;
+        }
+        if (in.count < length) {
+            throw new IllegalArgumentException("Chunk " + index + " was truncated at " + in.count + " of "
+                    + length + " bytes");
+        }
+        if (failure != null) {
+            // Completed, aborted or expired while the part was on its way
+            session(uploadId);
+            throw failure;
+        }
+        if (expectedCrc32c != null && Long.parseUnsignedLong(expectedCrc32c, 16) != crc.getValue()) {
+            // Left unrecorded; the chunk sent again replaces the part
+            throw new IllegalArgumentException("CRC32C mismatch for chunk " + index);
+        }
+        if (!sessions.addPart(uploadId, partNumber, etag)) {
+            // A concurrent send of the same chunk was recorded first, or the session is gone
+            session(uploadId);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Verifies that every chunk arrived (and the SHA-256, if the client sent
+     * one). The assembled object stays under its staging key for the caller
+     * to store.
+     */
+    @Override
+    public CompletedUpload complete(String uploadId, String expectedSha256) throws IOException {
+        Claimed claimed = transactionTemplate.execute(status -> {
+            Session session = sessions.lock(uploadId)
+                    .orElseThrow(() -> new NoSuchElementException("Unknown upload " + uploadId));
+            List<Part> parts = sessions.findParts(uploadId);
+            int missing = session.chunkCount() - parts.size();
+            if (missing > 0) {
+                throw new IllegalStateException(missing + " chunks are still missing");
+            }
+            sessions.remove(uploadId);
+            return new Claimed(session, parts);
+        });
+        Session session = claimed.session();
+        try {
+            if (session.multipartUploadId() == null) {
+                storage.store(session.stagingKey(), InputStream.nullInputStream(), 0, session.contentType());
+            } else {
+                SortedMap<Integer, String> etags = new TreeMap<>();
+                claimed.parts().forEach(part -> etags.put(part.partNumber(), part.etag()));
+                storage.completeMultipartUpload(session.stagingKey(), session.multipartUploadId(), etags);
+            }
+        } catch (IOException e) {
+            abortMultipartUpload(session);
+            throw e;
+        }
+
+        String sha256;
+        try {
+            sha256 = sha256(session);
+        } catch (IOException e) {
+            deleteStaged(session);
+            throw e;
+        }
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+            deleteStaged(session);
+            throw new IllegalArgumentException("SHA-256 mismatch, upload discarded");
+        }
+        log.info("Completed chunked upload {} for {} (sha256 {})", uploadId, session.filename(), sha256);
+        return new CompletedUpload(session.filename(), null, session.stagingKey(), session.size(),
+                session.contentType(), sha256);
+    }
+
+    @Override
+    public void abort(String uploadId) throws IOException {
+        Session session = sessions.remove(uploadId)
+                .orElseThrow(() -> new NoSuchElementException("Unknown upload " + uploadId));
+        if (session.multipartUploadId() != null) {
+            storage.abortMultipartUpload(session.stagingKey(), session.multipartUploadId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${files.upload.cleanup-interval-ms:60000}")
+    public void expireIdleSessions() {
+        List<Session> expired;
+        do {
+            expired = sessions.removeIdle(sessionTtlMs, EXPIRY_BATCH_SIZE);
+            for (Session session : expired) {
+                log.info("Expiring idle chunked upload {} ({})", session.id(), session.filename());
+                abortMultipartUpload(session);
+            }
+        } while (expired.size() == EXPIRY_BATCH_SIZE);
+    }
+
+    private Session session(String uploadId) {
+        return sessions.touch(uploadId).orElseThrow(() -> new NoSuchElementException("Unknown upload " + uploadId));
+    }
+
+    // Read back once: chunks arrive on different replicas in any order, so none of them sees the whole file
+    private String sha256(Session session) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (session.size() > 0) {
+            try (InputStream in = new DigestInputStream(storage.open(session.stagingKey(), 0, session.size()), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void abortMultipartUpload(Session session) {
+        if (session.multipartUploadId() == null) {
+            return;
+        }
+        try {
+            storage.abortMultipartUpload(session.stagingKey(), session.multipartUploadId());
+        } catch (IOException e) {
+            log.warn("Failed to abort multipart upload of chunked upload {}: {}", session.id(), e.getMessage());
+        }
+    }
+
+    private void deleteStaged(Session session) {
+        try {
+            storage.delete(session.stagingKey());
+        } catch (IOException e) {
+            log.warn("Failed to delete staged object of chunked upload {}: {}", session.id(), e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> status(Session session, List<Part> parts) {
+        boolean[] received = new boolean[session.chunkCount()];
+        parts.forEach(part -> received[part.partNumber() - 1] = true);
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < received.length; i++) {
+            if (!received[i]) {
+                missing.add(i);
+            }
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("uploadId", session.id());
+        status.put("filename", session.filename());
+        status.put("size", session.size());
+        status.put("chunkSize", session.chunkSize());
+        status.put("chunkCount", session.chunkCount());
+        status.put("receivedChunks", parts.size());
+        status.put("missingChunks", missing);
+        return status;
+    }
+
+    // How far the request body got, to tell a truncated chunk from a failed upload. No mark/reset:
+    // a request body cannot be read twice, and a retry replaying it would count the bytes again
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.multiaccount.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps files in an S3-compatible bucket (MinIO in docker-compose), so every
+ * backend replica sees every upload.
+ *
+ * Objects larger than one part are sent as a multipart upload whose parts go
+ * out in parallel. Part buffers come from a pool shared by all uploads, so at
+ * most storage.s3.max-buffers x storage.s3.part-size bytes are held in memory
+ * no matter how many or how large the uploads are; a reader that runs ahead
+ * of the network waits for a buffer to come back. Reads use ranged GETs.
+ *
+ * Chunked uploads drive a multipart upload themselves, one part per chunk
+ * from whichever replica receives it, through {@link #startMultipartUpload}
+ * and the methods after it.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+public class S3FileStorage implements FileStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(S3FileStorage.class);
+    // S3 rejects parts smaller than 5 MiB (except the last one), more than 10,000 parts and single copies over 5 GiB
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    static final int MAX_PARTS = 10_000;
+    private static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+    private static final long COPY_PART_SIZE = 512L * 1024 * 1024;
+
+    private final S3Client s3;
+    private final String bucket;
+    private final int partSize;
+    private final BlockingQueue<byte[]> buffers;
+    private final AtomicInteger allocatedBuffers = new AtomicInteger();
+    private final int maxBuffers;
+    private final ExecutorService uploadExecutor;
+
+    public S3FileStorage(@Value("${minio.endpoint}") String endpoint,
+                         @Value("${minio.access-key}") String accessKey,
+                         @Value("${minio.secret-key}") String secretKey,
+                         @Value("${storage.s3.bucket:uploads}") String bucket,
+                         @Value("${storage.s3.region:us-east-1}") String region,
+                         @Value("${storage.s3.part-size:8388608}") int partSize,
+                         @Value("${storage.s3.max-buffers:16}") int maxBuffers,
+                         @Value("${storage.s3.upload-threads:8}") int uploadThreads) {
+        this.s3 = S3Client.builder()
+                .endpointOverride(URI.create(endpoint))
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+                // MinIO serves buckets by path, not by virtual host
+                .forcePathStyle(true)
+                .build();
+        this.bucket = bucket;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.maxBuffers = Math.max(maxBuffers, 1);
+        this.buffers = new ArrayBlockingQueue<>(this.maxBuffers);
+        AtomicInteger threadId = new AtomicInteger();
+        this.uploadExecutor = Executors.newFixedThreadPool(uploadThreads, r -> {
+            Thread t = new Thread(r, "s3-upload-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ensureBucket();
+    }
+
+    @Override
+    public void store(String key, Path source, String contentType) throws IOException {
+        try (InputStream in = Files.newInputStream(source)) {
+            store(key, in, Files.size(source), contentType);
+        }
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public void store(String key, InputStream in, long size, String contentType) throws IOException {
+        try {
+            if (size <= partSize) {
+                s3.putObject(b -> b.bucket(bucket).key(key).contentType(contentType),
+                        RequestBody.fromInputStream(in, size));
+                return;
+            }
+            storeMultipart(key, in, size, contentType);
+        } catch (SdkException e) {
+            throw new IOException("Failed to store " + key + " in bucket " + bucket, e);
+        }
+    }
+
+    /** Copies server-side; objects over 5 GiB are copied as a multipart upload of ranges. */
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        try {
+            HeadObjectResponse head = s3.headObject(b -> b.bucket(bucket).key(sourceKey));
+            if (head.contentLength() <= MAX_COPY_SIZE) {
+                s3.copyObject(b -> b.sourceBucket(bucket).sourceKey(sourceKey)
+                        .destinationBucket(bucket).destinationKey(targetKey));
+                return;
+            }
+            copyMultipart(sourceKey, targetKey, head.contentLength(), head.contentType());
+        } catch (SdkException e) {
+            throw new IOException("Failed to copy " + sourceKey + " to " + targetKey, e);
+        }
+    }
+
+    /** Starts a multipart upload to {@code key} whose parts are sent one at a time by the caller; returns its id. */
+    public String startMultipartUpload(String key, String contentType) throws IOException {
+        try {
+            return s3.createMultipartUpload(b -> b.bucket(bucket).key(key).contentType(contentType)).uploadId();
+        } catch (SdkException e) {
+            throw new IOException("Failed to start a multipart upload of " + key, e);
+        }
+    }
+
+    /**
+     * Streams exactly {@code length} bytes from {@code in} as one part and
+     * returns its ETag. Sending a part number again replaces that part.
+     */
+    public String putPart(String key, String uploadId, int partNumber, InputStream in, long length) throws IOException {
+        try {
+            return s3.uploadPart(b -> b.bucket(bucket).key(key).uploadId(uploadId).partNumber(partNumber),
+                    RequestBody.fromInputStream(in, length)).eTag();
+        } catch (SdkException e) {
+            throw new IOException("Failed to upload part " + partNumber + " of " + key, e);
+        }
+    }
+
+    /** Assembles the parts, given as ETags by part number, into the object. */
+    public void completeMultipartUpload(String key, String uploadId, SortedMap<Integer, String> etags)
+            throws IOException {
+        List<CompletedPart> parts = new ArrayList<>(etags.size());
+        etags.forEach((partNumber, etag) -> parts.add(CompletedPart.builder().partNumber(partNumber).eTag(etag).build()));
+        try {
+            s3.completeMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build()));
+        } catch (SdkException e) {
+            throw new IOException("Failed to complete the multipart upload of " + key, e);
+        }
+    }
+
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        try {
+            s3.abortMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId));
+        } catch (NoSuchUploadException e) {
+            // Already completed or aborted
+        } catch (SdkException e) {
+            throw new IOException("Failed to abort the multipart upload of " + key, e);
+        }
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        try {
+            HeadObjectResponse head = s3.headObject(b -> b.bucket(bucket).key(key));
+            return Optional.of(new StoredObject(head.contentLength(), head.lastModified()));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        } catch (SdkException e) {
+            throw new IOException("Failed to stat " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        try {
+            return s3.getObject(b -> b.bucket(bucket).key(key).range("bytes=" + offset + "-" + (offset + length - 1)));
+        } catch (SdkException e) {
+            throw new IOException("Failed to read " + key, e);
+        }
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return null;
+    }
+
+    @Override
+    public String location(String key) {
+        return "s3://" + bucket + "/" + key;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(b -> b.bucket(bucket).key(key));
+        } catch (SdkException e) {
+            throw new IOException("Failed to delete " + key, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+        s3.close();
+    }
+
+    private void storeMultipart(String key, InputStream in, long size, String contentType) throws IOException {
+        String uploadId = s3.createMultipartUpload(b -> b.bucket(bucket).key(key).contentType(contentType)).uploadId();
+        List<Future<CompletedPart>> parts = new ArrayList<>();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try {
+            long remaining = size;
+            for (int partNumber = 1; remaining > 0 && failure.get() == null; partNumber++) {
+                byte[] buffer = acquireBuffer();
+                int length;
+                try {
+                    length = in.readNBytes(buffer, 0, (int) Math.min(partSize, remaining));
+                } catch (IOException e) {
+                    releaseBuffer(buffer);
+                    throw e;
+                }
+                if (length == 0) {
+                    releaseBuffer(buffer);
+                    throw new IOException("Stream for " + key + " ended " + remaining + " bytes early");
+                }
+                remaining -= length;
+                int number = partNumber;
+                parts.add(uploadExecutor.submit(() -> uploadPart(key, uploadId, number, buffer, length, failure)));
+            }
+            // Wait for every part even after a failure: each one holds a pooled buffer until it finishes
+            List<CompletedPart> completed = new ArrayList<>(parts.size());
+            for (Future<CompletedPart> part : parts) {
+                completed.add(part.get());
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            s3.completeMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build()));
+            log.info("Stored {} in {} parts ({} bytes)", key, completed.size(), size);
+        } catch (Exception e) {
+            for (Future<CompletedPart> part : parts) {
+                try {
+                    part.get();
+                } catch (InterruptedException | ExecutionException ignored) {
+                    // Only waiting for the buffer to come back
+                }
+            }
+            try {
+                s3.abortMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId));
+            } catch (SdkException abortError) {
+                log.warn("Failed to abort multipart upload {} for {}: {}", uploadId, key, abortError.getMessage());
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw e instanceof IOException io ? io : new IOException("Multipart upload of " + key + " failed", e);
+        }
+    }
+
+    private void copyMultipart(String sourceKey, String targetKey, long size, String contentType) {
+        String uploadId = s3.createMultipartUpload(b -> b.bucket(bucket).key(targetKey).contentType(contentType))
+                .uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += COPY_PART_SIZE) {
+                int partNumber = parts.size() + 1;
+                String range = "bytes=" + offset + "-" + (Math.min(offset + COPY_PART_SIZE, size) - 1);
+                String etag = s3.uploadPartCopy(b -> b.sourceBucket(bucket).sourceKey(sourceKey).copySourceRange(range)
+                        .destinationBucket(bucket).destinationKey(targetKey).uploadId(uploadId).partNumber(partNumber))
+                        .copyPartResult().eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(etag).build());
+            }
+            s3.completeMultipartUpload(b -> b.bucket(bucket).key(targetKey).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build()));
+            log.info("Copied {} to {} in {} parts ({} bytes)", sourceKey, targetKey, parts.size(), size);
+        } catch (SdkException e) {
+            try {
+                s3.abortMultipartUpload(b -> b.bucket(bucket).key(targetKey).uploadId(uploadId));
+            } catch (SdkException abortError) {
+                log.warn("Failed to abort multipart copy {} to {}: {}", uploadId, targetKey, abortError.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    private CompletedPart uploadPart(String key, String uploadId, int partNumber, byte[] buffer, int length,
+                                     AtomicReference<Exception> failure) {
+        try {
+            String etag = s3.uploadPart(b -> b.bucket(bucket).key(key).uploadId(uploadId).partNumber(partNumber),
+                    RequestBody.fromContentProvider(() -> new ByteArrayInputStream(buffer, 0, length), length,
+                            "application/octet-stream")).eTag();
+            return CompletedPart.builder().partNumber(partNumber).eTag(etag).build();
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+            return null;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    // Buffers are allocated lazily up to maxBuffers, then recycled
+    private byte[] acquireBuffer() throws InterruptedException {
+        byte[] buffer = buffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocatedBuffers.incrementAndGet() <= maxBuffers) {
+            return new byte[partSize];
+        }
+        allocatedBuffers.decrementAndGet();
+        return buffers.take();
+    }
+
+    private void releaseBuffer(byte[] buffer) {
+        buffers.offer(buffer);
+    }
+
+    private void ensureBucket() {
+        try {
+            s3.headBucket(b -> b.bucket(bucket));
+        } catch (NoSuchBucketException e) {
+            s3.createBucket(b -> b.bucket(bucket));
+            log.info("Created bucket {}", bucket);
+        } catch (SdkException e) {
+            log.warn("Could not check bucket {}: {}", bucket, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.multiaccount.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring of the most recent worker log entries.
+ *
+ * Writers claim a sequence number with one atomic increment and store their
+ * entry in slot {@code seq & mask}, overwriting the oldest one; there are no
+ * locks and no copying. Readers walk the sequence range they are interested
+ * in and use the sequence stored in each entry to tell an entry that was
+ * overwritten by a newer lap from one that is still being written.
+ */
+@Component
+public class WorkerLogBuffer {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public record Entry(@JsonProperty("id") long seq,
+                        @JsonProperty("item_id") Long itemId,
+                        @JsonProperty("processed_at") String processedAt,
+                        @JsonProperty("note") String note) { }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong lastSeq = new AtomicLong();
+
+    public WorkerLogBuffer(@Value("${worker.logs.capacity:1024}") int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public long add(Long itemId, String note) {
+        long seq = lastSeq.incrementAndGet();
+        slots.set((int) (seq & mask), new Entry(seq, itemId, LocalDateTime.now().format(TIMESTAMP),
+                note != null ? note : "Item processed successfully"));
+        return seq;
+    }
+
+    /** Sequence number of the newest entry, 0 if nothing was logged yet. */
+    public long lastSeq() {
+        return lastSeq.get();
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * Entries with a sequence number greater than {@code afterSeq}, oldest
+     * first, at most {@code limit} of them. Stops at the first entry that is
+     * still being written so that it is not skipped by the next call.
+     */
+    public List<Entry> since(long afterSeq, int limit) {
+        long last = lastSeq.get();
+        long from = Math.max(afterSeq + 1, last - slots.length() + 1);
+        List<Entry> result = new ArrayList<>((int) Math.min(Math.max(last - from + 1, 0), limit));
+        for (long seq = from; seq <= last && result.size() < limit; seq++) {
+            Entry entry = slots.get((int) (seq & mask));
+            if (entry == null || entry.seq() < seq) {
+                break;
+            }
+            if (entry.seq() == seq) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+}
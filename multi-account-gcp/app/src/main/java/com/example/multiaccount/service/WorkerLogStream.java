@@ -0,0 +1,124 @@
+package com.example.multiaccount.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes new worker log entries to server-sent event subscribers.
+ *
+ * One dispatcher thread polls the {@link WorkerLogBuffer} and sends each
+ * subscriber only what it has not seen yet. Every event carries its sequence
+ * number as the SSE id, so a reconnecting EventSource resumes from
+ * Last-Event-ID. Idle streams get a comment now and then so proxies keep them
+ * open and dead clients are noticed.
+ */
+@Component
+public class WorkerLogStream {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkerLogStream.class);
+    private static final int MAX_BATCH = 256;
+
+    private final WorkerLogBuffer buffer;
+    private final long timeoutMs;
+    private final long heartbeatMs;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "worker-log-stream");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        long lastSeq;
+        long lastSentAt = System.currentTimeMillis();
+
+        Subscriber(SseEmitter emitter, long lastSeq) {
+            this.emitter = emitter;
+            this.lastSeq = lastSeq;
+        }
+    }
+
+    public WorkerLogStream(WorkerLogBuffer buffer,
+                           @Value("${worker.logs.stream.interval-ms:250}") long intervalMs,
+                           @Value("${worker.logs.stream.timeout-ms:1800000}") long timeoutMs,
+                           @Value("${worker.logs.stream.heartbeat-ms:15000}") long heartbeatMs) {
+        this.buffer = buffer;
+        this.timeoutMs = timeoutMs;
+        this.heartbeatMs = heartbeatMs;
+        dispatcher.scheduleWithFixedDelay(this::dispatch, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Streams every entry after {@code afterSeq}; entries already overwritten are skipped. */
+    public SseEmitter subscribe(long afterSeq) {
+        if (afterSeq > buffer.lastSeq()) {
+            // The client saw a previous instance of this buffer (we restarted), start over
+            afterSeq = 0;
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, afterSeq);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        log.info("Worker log stream subscribed from seq {} ({} subscribers)", afterSeq, subscribers.size());
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(s -> s.emitter.complete());
+    }
+
+    private void dispatch() {
+        long last = buffer.lastSeq();
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            try {
+                if (subscriber.lastSeq < last) {
+                    send(subscriber);
+                    subscriber.lastSentAt = now;
+                } else if (now - subscriber.lastSentAt >= heartbeatMs) {
+                    subscriber.emitter.send(SseEmitter.event().comment("keepalive"));
+                    subscriber.lastSentAt = now;
+                }
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(subscriber);
+                subscriber.emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber) throws IOException {
+        List<WorkerLogBuffer.Entry> entries;
+        while (!(entries = buffer.since(subscriber.lastSeq, MAX_BATCH)).isEmpty()) {
+            for (WorkerLogBuffer.Entry entry : entries) {
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(Long.toString(entry.seq()))
+                        .name("log")
+                        .data(entry, MediaType.APPLICATION_JSON));
+            }
+            subscriber.lastSeq = entries.get(entries.size() - 1).seq();
+            if (entries.size() < MAX_BATCH) {
+                return;
+            }
+        }
+    }
+}
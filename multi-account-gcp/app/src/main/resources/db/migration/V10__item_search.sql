@@ -0,0 +1,10 @@
+-- Full-text search over name (weight A) and description (weight B) for GET /v1/items/search.
+-- A stored generated column keeps the document current on every insert/update without triggers;
+-- adding it rewrites the table once.
+ALTER TABLE item ADD COLUMN IF NOT EXISTS search tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('english', coalesce(name, '')), 'A') ||
+        setweight(to_tsvector('english', coalesce(description, '')), 'B')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS item_search_idx ON item USING GIN (search);
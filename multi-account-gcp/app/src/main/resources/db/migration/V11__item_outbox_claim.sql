@@ -0,0 +1,3 @@
+-- The relay claims rows for a lease in a short transaction and publishes outside it;
+-- rows whose lease ran out (relay crashed mid-publish) are claimed again
+ALTER TABLE item_outbox ADD COLUMN IF NOT EXISTS claimed_until TIMESTAMPTZ;
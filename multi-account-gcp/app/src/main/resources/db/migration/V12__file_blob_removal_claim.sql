@@ -0,0 +1,4 @@
+-- Removing a blob's contents is claimed for a lease in a short transaction and done outside it;
+-- uploads of the same contents take no new reference while the claim holds, and claims whose
+-- lease ran out (backend died mid-removal) are taken again
+ALTER TABLE file_blob ADD COLUMN IF NOT EXISTS deleting_until TIMESTAMPTZ;
@@ -0,0 +1,23 @@
+-- Chunked upload sessions on S3 storage: every chunk is a part of one multipart upload, and any
+-- replica can take the next chunk because the session and its received parts live here
+CREATE TABLE IF NOT EXISTS upload_session (
+  id TEXT PRIMARY KEY,
+  filename TEXT NOT NULL,
+  content_type TEXT,
+  size_bytes BIGINT NOT NULL,
+  chunk_size INT NOT NULL,
+  chunk_count INT NOT NULL,
+  -- Object the parts are assembled into; multipart_upload_id is NULL for an empty file, which has no parts
+  staging_key TEXT NOT NULL,
+  multipart_upload_id TEXT,
+  last_touched TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS upload_session_last_touched_idx ON upload_session (last_touched);
+
+CREATE TABLE IF NOT EXISTS upload_session_part (
+  session_id TEXT NOT NULL REFERENCES upload_session (id) ON DELETE CASCADE,
+  part_number INT NOT NULL,
+  etag TEXT NOT NULL,
+  PRIMARY KEY (session_id, part_number)
+);
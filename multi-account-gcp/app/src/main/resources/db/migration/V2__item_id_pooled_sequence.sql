@@ -0,0 +1,2 @@
+-- Hibernate's pooled optimizer reserves 50 ids per nextval call
+ALTER SEQUENCE item_id_seq INCREMENT BY 50;
@@ -0,0 +1,11 @@
+-- Item events are written here in the same transaction as the item row and
+-- relayed to RabbitMQ in the background (transactional outbox)
+CREATE TABLE IF NOT EXISTS item_outbox (
+  id BIGSERIAL PRIMARY KEY,
+  topic TEXT NOT NULL,
+  item_id BIGINT NOT NULL,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+-- Pooled sequence ids so batch creates can batch their outbox inserts too
+ALTER SEQUENCE item_outbox_id_seq INCREMENT BY 50;
@@ -0,0 +1,2 @@
+-- Unique id per event, sent as the AMQP message id so the worker can drop redeliveries
+ALTER TABLE item_outbox ADD COLUMN IF NOT EXISTS event_id UUID NOT NULL DEFAULT gen_random_uuid();
@@ -0,0 +1,15 @@
+-- Metadata for every stored upload; the file itself lives under files.upload.dir
+CREATE TABLE IF NOT EXISTS uploaded_file (
+  id BIGSERIAL PRIMARY KEY,
+  saved_name TEXT NOT NULL UNIQUE,
+  name TEXT NOT NULL,
+  size_bytes BIGINT NOT NULL,
+  content_type TEXT,
+  path TEXT NOT NULL,
+  sha256 CHAR(64),
+  uploaded_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+-- Keyset pages newest first, optionally narrowed to one content type
+CREATE INDEX IF NOT EXISTS uploaded_file_uploaded_at_idx ON uploaded_file (uploaded_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS uploaded_file_type_uploaded_at_idx ON uploaded_file (content_type, uploaded_at DESC, id DESC);
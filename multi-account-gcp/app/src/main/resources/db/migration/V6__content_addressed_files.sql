@@ -0,0 +1,12 @@
+-- File contents are stored once per SHA-256 and shared by every upload with the same bytes
+CREATE TABLE IF NOT EXISTS file_blob (
+  sha256 CHAR(64) PRIMARY KEY,
+  size_bytes BIGINT NOT NULL,
+  ref_count INT NOT NULL,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+-- Object key in the storage backend; files stored before this migration keep their saved name as key
+ALTER TABLE uploaded_file ADD COLUMN IF NOT EXISTS storage_key TEXT;
+UPDATE uploaded_file SET storage_key = saved_name WHERE storage_key IS NULL;
+ALTER TABLE uploaded_file ALTER COLUMN storage_key SET NOT NULL;
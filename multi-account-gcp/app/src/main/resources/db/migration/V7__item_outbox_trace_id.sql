@@ -0,0 +1,2 @@
+-- Trace id shared by the events of one create/update call, sent as the x-trace-id header
+ALTER TABLE item_outbox ADD COLUMN IF NOT EXISTS trace_id UUID;
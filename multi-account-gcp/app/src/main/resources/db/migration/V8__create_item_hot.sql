@@ -0,0 +1,9 @@
+-- Most accessed items, snapshotted from the replicas' near caches for the startup cache warm-up.
+-- score decays on every snapshot, so items that cool off drift down and are dropped after a day.
+CREATE TABLE IF NOT EXISTS item_hot (
+  item_id BIGINT PRIMARY KEY,
+  score DOUBLE PRECISION NOT NULL,
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS item_hot_score_idx ON item_hot (score DESC);
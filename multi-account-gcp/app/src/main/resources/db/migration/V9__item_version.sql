@@ -0,0 +1,2 @@
+-- Optimistic locking: every update bumps version, and PUT /v1/items/{id} can be made conditional on it (If-Match)
+ALTER TABLE item ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,106 @@
+package com.example.multiaccount.config;
+
+import com.example.multiaccount.model.Item;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemRedisSerializerTest {
+
+    // An item as the first release wrote it: id 42, name "a", description "b", createdAt 1s + 5ns, no version flag
+    private static final byte[] PRE_VERSION_ITEM = {
+            ItemRedisSerializer.MAGIC, ItemRedisSerializer.VERSION, 0x0F, 0x54, 1, 'a', 1, 'b', 2, 5};
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    private final ItemRedisSerializer binary = new ItemRedisSerializer(mapper, true, new SimpleMeterRegistry());
+
+    @Test
+    void roundTripsAVersionedItem() {
+        Item item = item(42L, "name", "déscription", Instant.parse("2024-05-01T12:00:00.123456789Z"), 7L);
+
+        Item read = (Item) binary.deserialize(binary.serialize(item));
+
+        assertThat(read).usingRecursiveComparison().isEqualTo(item);
+    }
+
+    @Test
+    void roundTripsNegativeAndLargeValues() {
+        Item item = item(-1L, "", null, Instant.ofEpochSecond(-86_400, 1), Long.MAX_VALUE);
+
+        assertThat(ItemRedisSerializer.decode(ItemRedisSerializer.encode(item))).usingRecursiveComparison().isEqualTo(item);
+    }
+
+    @Test
+    void itemWithoutVersionKeepsThePreVersionLayout() {
+        Item item = item(42L, "a", "b", Instant.ofEpochSecond(1, 5), null);
+
+        assertThat(ItemRedisSerializer.encode(item)).isEqualTo(PRE_VERSION_ITEM);
+    }
+
+    @Test
+    void decodesAValueWrittenBeforeTheVersionFlag() {
+        Item read = (Item) binary.deserialize(PRE_VERSION_ITEM);
+
+        assertThat(read.getId()).isEqualTo(42L);
+        assertThat(read.getName()).isEqualTo("a");
+        assertThat(read.getDescription()).isEqualTo("b");
+        assertThat(read.getCreatedAt()).isEqualTo(Instant.ofEpochSecond(1, 5));
+        assertThat(read.getVersion()).isNull();
+    }
+
+    @Test
+    void versionFollowsCreatedAtSoOlderReadersCanStopBeforeIt() {
+        Item item = item(42L, "a", "b", Instant.ofEpochSecond(1, 5), 3L);
+
+        byte[] bytes = ItemRedisSerializer.encode(item);
+
+        assertThat(bytes[2]).isEqualTo((byte) (0x0F | 1 << 4));
+        assertThat(bytes).hasSize(PRE_VERSION_ITEM.length + 1).endsWith(6);
+    }
+
+    @Test
+    void readsJsonItemsWithAndWithoutVersion() {
+        Item withVersion = (Item) binary.deserialize(
+                "{\"id\":1,\"name\":\"n\",\"version\":4}".getBytes(StandardCharsets.UTF_8));
+        Item withoutVersion = (Item) binary.deserialize(
+                "{\"@class\":\"com.example.multiaccount.model.Item\",\"id\":2,\"name\":\"n\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(withVersion.getVersion()).isEqualTo(4L);
+        assertThat(withoutVersion.getId()).isEqualTo(2L);
+        assertThat(withoutVersion.getVersion()).isNull();
+    }
+
+    @Test
+    void jsonCodecRoundTripsTheVersion() {
+        ItemRedisSerializer json = new ItemRedisSerializer(mapper, false, new SimpleMeterRegistry());
+        Item item = item(42L, "name", null, Instant.parse("2024-05-01T12:00:00Z"), 9L);
+
+        byte[] bytes = json.serialize(item);
+
+        assertThat(bytes[0]).isEqualTo((byte) '{');
+        assertThat(((Item) json.deserialize(bytes)).getVersion()).isEqualTo(9L);
+    }
+
+    @Test
+    void valueFromANewerSchemaReadsAsAMiss() {
+        byte[] newer = PRE_VERSION_ITEM.clone();
+        newer[1] = ItemRedisSerializer.VERSION + 1;
+
+        assertThat(binary.deserialize(newer)).isNull();
+    }
+
+    private static Item item(Long id, String name, String description, Instant createdAt, Long version) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName(name);
+        item.setDescription(description);
+        item.setCreatedAt(createdAt);
+        item.setVersion(version);
+        return item;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.multiaccount.controller;
+
+import com.example.multiaccount.model.UploadedFile;
+import com.example.multiaccount.service.FileMetadataService;
+import com.example.multiaccount.service.FileStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class FileDownloadControllerTest {
+
+    private static final int SIZE = 1000;
+    private static final String SHA = "ab".repeat(32);
+    private static final String ETAG = "\"" + SHA + "\"";
+    private static final Instant UPLOADED_AT = Instant.parse("2024-05-01T12:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    private final FileStorage storage = mock(FileStorage.class);
+    private final FileMetadataService metadata = mock(FileMetadataService.class);
+    private MockMvc mvc;
+    private byte[] data;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        data = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            data[i] = (byte) i;
+        }
+        Path file = Files.write(dir.resolve("blob"), data);
+
+        UploadedFile meta = new UploadedFile();
+        meta.setSavedName("f1");
+        meta.setStorageKey("key1");
+        meta.setName("f1.bin");
+        meta.setSizeBytes(SIZE);
+        meta.setContentType("application/octet-stream");
+        meta.setSha256(SHA);
+        meta.setUploadedAt(UPLOADED_AT);
+        when(metadata.find("f1")).thenReturn(Optional.of(meta));
+        when(metadata.find("missing")).thenReturn(Optional.empty());
+        when(storage.localPath("key1")).thenReturn(file);
+
+        mvc = MockMvcBuilders.standaloneSetup(new FileDownloadController(storage, metadata, 4)).build();
+    }
+
+    @Test
+    void noRangeServesTheWholeFile() throws Exception {
+        mvc.perform(get("/v1/files/f1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(content().bytes(data));
+    }
+
+    @Test
+    void unknownFileIsNotFound() throws Exception {
+        mvc.perform(get("/v1/files/missing")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void closedRange() throws Exception {
+        expectPartial(range("bytes=100-199"), 100, 199);
+    }
+
+    @Test
+    void openEndedRange() throws Exception {
+        expectPartial(range("bytes=990-"), 990, 999);
+    }
+
+    @Test
+    void rangeEndPastEofIsClamped() throws Exception {
+        expectPartial(range("bytes=900-5000"), 900, 999);
+    }
+
+    @Test
+    void suffixRange() throws Exception {
+        expectPartial(range("bytes=-100"), 900, 999);
+    }
+
+    @Test
+    void suffixLongerThanTheFileServesAllOfIt() throws Exception {
+        expectPartial(range("bytes=-5000"), 0, 999);
+    }
+
+    @Test
+    void rangeStartingAtOrPastEofIsNotSatisfiable() throws Exception {
+        for (String header : new String[] {"bytes=1000-1100", "bytes=5000-", "bytes=-0"}) {
+            range(header)
+                    .andExpect(status().isRequestedRangeNotSatisfiable())
+                    .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + SIZE));
+        }
+    }
+
+    @Test
+    void multipleRangesFallBackToTheWholeFile() throws Exception {
+        range("bytes=0-9,20-29")
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(content().bytes(data));
+    }
+
+    @Test
+    void malformedRangesAreIgnored() throws Exception {
+        for (String header : new String[] {"bytes=abc", "items=0-10", "bytes=200-100", "bytes=5"}) {
+            range(header).andExpect(status().isOk()).andExpect(content().bytes(data));
+        }
+    }
+
+    @Test
+    void ifRangeWithTheCurrentEtagHonoursTheRange() throws Exception {
+        expectPartial(mvc.perform(get("/v1/files/f1").header(HttpHeaders.RANGE, "bytes=0-9")
+                .header(HttpHeaders.IF_RANGE, ETAG)), 0, 9);
+    }
+
+    @Test
+    void ifRangeWithTheUploadDateHonoursTheRange() throws Exception {
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(UPLOADED_AT.atZone(ZoneOffset.UTC));
+        expectPartial(mvc.perform(get("/v1/files/f1").header(HttpHeaders.RANGE, "bytes=0-9")
+                .header(HttpHeaders.IF_RANGE, date)), 0, 9);
+    }
+
+    @Test
+    void ifRangeWithAStaleValidatorServesTheWholeFile() throws Exception {
+        for (String stale : new String[] {"\"other\"", "W/" + ETAG, "Mon, 01 Jan 2024 00:00:00 GMT"}) {
+            mvc.perform(get("/v1/files/f1").header(HttpHeaders.RANGE, "bytes=0-9").header(HttpHeaders.IF_RANGE, stale))
+                    .andExpect(status().isOk())
+                    .andExpect(content().bytes(data));
+        }
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        mvc.perform(get("/v1/files/f1").header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void remoteBackendStreamsTheRangedRead() throws Exception {
+        when(storage.localPath("key1")).thenReturn(null);
+        when(storage.open("key1", 100, 100)).thenReturn(new ByteArrayInputStream(Arrays.copyOfRange(data, 100, 200)));
+
+        expectPartial(range("bytes=100-199"), 100, 199);
+    }
+
+    private ResultActions range(String header) throws Exception {
+        return mvc.perform(get("/v1/files/f1").header(HttpHeaders.RANGE, header));
+    }
+
+    private void expectPartial(ResultActions result, int from, int to) throws Exception {
+        result.andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes " + from + "-" + to + "/" + SIZE))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, to - from + 1))
+                .andExpect(content().bytes(Arrays.copyOfRange(data, from, to + 1)));
+    }
+}
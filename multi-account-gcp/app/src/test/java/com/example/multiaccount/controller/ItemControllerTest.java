@@ -0,0 +1,212 @@
+package com.example.multiaccount.controller;
+
+import com.example.multiaccount.model.Item;
+import com.example.multiaccount.repo.ItemRepositoryCustom;
+import com.example.multiaccount.service.CacheWarmup;
+import com.example.multiaccount.service.ItemService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ItemControllerTest {
+
+    private static final String BODY = "{\"name\":\"renamed\",\"description\":\"d\"}";
+
+    private final ItemService service = mock(ItemService.class);
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.standaloneSetup(new ItemController(service, mock(CacheWarmup.class))).build();
+    }
+
+    @Test
+    void getSendsTheVersionAsETag() throws Exception {
+        when(service.get(1L)).thenReturn(Optional.of(item(1L, 3L)));
+
+        mvc.perform(get("/v1/items/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+    }
+
+    @Test
+    void getUnknownItemIsNotFound() throws Exception {
+        when(service.get(1L)).thenReturn(Optional.empty());
+
+        mvc.perform(get("/v1/items/1")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void createReturnsTheNewItem() throws Exception {
+        when(service.create(any())).thenReturn(item(7L, 0L));
+
+        mvc.perform(post("/v1/items").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.LOCATION, "/v1/items/7"))
+                .andExpect(jsonPath("$.id").value(7));
+    }
+
+    @Test
+    void createWithAnIdIsBadRequest() throws Exception {
+        mvc.perform(post("/v1/items").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":5,\"name\":\"n\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("id is assigned by the server"));
+        mvc.perform(post("/v1/items/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"name\":\"a\"},{\"id\":5,\"name\":\"n\"}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("id is assigned by the server"));
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void putWithoutIfMatchIsUnconditional() throws Exception {
+        when(service.update(eq(1L), any(), isNull())).thenReturn(item(1L, 4L));
+
+        mvc.perform(update())
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.version").value(4));
+    }
+
+    @Test
+    void wildcardIfMatchOnlyRequiresTheItem() throws Exception {
+        when(service.update(eq(1L), any(), isNull())).thenReturn(item(1L, 4L));
+
+        mvc.perform(update().header(HttpHeaders.IF_MATCH, " * ")).andExpect(status().isOk());
+        verify(service).update(eq(1L), any(), isNull());
+    }
+
+    @Test
+    void strongIfMatchIsTheExpectedVersion() throws Exception {
+        when(service.update(eq(1L), any(), eq(3L))).thenReturn(item(1L, 4L));
+
+        mvc.perform(update().header(HttpHeaders.IF_MATCH, "\"3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    void weakOrMalformedIfMatchFailsWithoutUpdating() throws Exception {
+        for (String tag : new String[] {"W/\"3\"", "3", "\"\"", "\"abc\"", "\"3", "\"3\", \"4\""}) {
+            mvc.perform(update().header(HttpHeaders.IF_MATCH, tag)).andExpect(status().isPreconditionFailed());
+        }
+        verify(service, never()).update(anyLong(), any(), any());
+    }
+
+    @Test
+    void staleVersionIsPreconditionFailed() throws Exception {
+        when(service.update(eq(1L), any(), eq(3L)))
+                .thenThrow(new OptimisticLockingFailureException("Item 1 is at version 5, not 3"));
+
+        mvc.perform(update().header(HttpHeaders.IF_MATCH, "\"3\""))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error").value("Item 1 is at version 5, not 3"));
+    }
+
+    @Test
+    void updatingAnUnknownItemIsNotFound() throws Exception {
+        when(service.update(eq(1L), any(), eq(3L))).thenThrow(new NoSuchElementException());
+
+        mvc.perform(update().header(HttpHeaders.IF_MATCH, "\"3\""))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Item 1 not found"));
+    }
+
+    @Test
+    void fullSearchPageLinksTheNextOne() throws Exception {
+        List<ItemRepositoryCustom.SearchHit> hits = List.of(hit(9L, 0.5f), hit(4L, 0.25f));
+        when(service.search("lamp", null, 2)).thenReturn(hits);
+
+        mvc.perform(get("/v1/items/search").param("q", "lamp").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(9))
+                .andExpect(jsonPath("$.items[1].id").value(4))
+                .andExpect(jsonPath("$.nextCursor").value(new ItemService.SearchCursor(0.25f, 4L).encode()));
+    }
+
+    @Test
+    void shortSearchPageEndsTheResults() throws Exception {
+        ItemService.SearchCursor cursor = new ItemService.SearchCursor(0.25f, 4L);
+        when(service.search("lamp", cursor, 2)).thenReturn(List.of(hit(3L, 0.25f)));
+
+        mvc.perform(get("/v1/items/search").param("q", "lamp").param("limit", "2").param("cursor", cursor.encode()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(3))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void searchLimitIsClamped() throws Exception {
+        when(service.search(any(), any(), anyInt())).thenReturn(List.of());
+
+        mvc.perform(get("/v1/items/search").param("q", "lamp").param("limit", "0")).andExpect(status().isOk());
+        mvc.perform(get("/v1/items/search").param("q", "lamp").param("limit", "5000")).andExpect(status().isOk());
+        verify(service).search("lamp", null, 1);
+        verify(service).search("lamp", null, 100);
+    }
+
+    @Test
+    void invalidCursorIsBadRequest() throws Exception {
+        for (String cursor : new String[] {"not base64!", token("1036831949"), token("abc:7"), token("1036831949:x")}) {
+            mvc.perform(get("/v1/items/search").param("q", "lamp").param("cursor", cursor))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.error").value("Invalid cursor"));
+        }
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void blankQueryIsBadRequest() throws Exception {
+        mvc.perform(get("/v1/items/search").param("q", " ")).andExpect(status().isBadRequest());
+        verifyNoInteractions(service);
+    }
+
+    private static MockHttpServletRequestBuilder update() {
+        return put("/v1/items/1").contentType(MediaType.APPLICATION_JSON).content(BODY);
+    }
+
+    private static ItemRepositoryCustom.SearchHit hit(Long id, float rank) {
+        return new ItemRepositoryCustom.SearchHit(item(id, 0L), rank);
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Item item(Long id, Long version) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName("renamed");
+        item.setVersion(version);
+        return item;
+    }
+}
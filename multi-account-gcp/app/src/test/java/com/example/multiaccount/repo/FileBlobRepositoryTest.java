@@ -0,0 +1,305 @@
+package com.example.multiaccount.repo;
+
+import com.example.multiaccount.model.UploadedFile;
+import com.example.multiaccount.service.FileMetadataService;
+import com.example.multiaccount.service.FileStorage;
+import com.example.multiaccount.service.LocalFileStorage;
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+/**
+ * Runs the blob reference counting and removal claims against a throwaway
+ * Postgres, first query by query and then through FileMetadataService with
+ * uploads and deletes of the same contents racing each other. Every call
+ * gets its own transaction, as in the service. Skipped when no Docker daemon
+ * is available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class FileBlobRepositoryTest {
+
+    private static final String HASH = "ab".repeat(32);
+    private static final long LEASE_MS = 30_000;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    private static LocalContainerEntityManagerFactoryBean entityManagerFactory;
+    private static JdbcTemplate jdbcTemplate;
+    private static JpaTransactionManager transactionManager;
+    private static TransactionTemplate transactionTemplate;
+    private static FileBlobRepository blobs;
+    private static UploadedFileRepository uploads;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void setUp() {
+        connect(new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()));
+    }
+
+    // Same wiring as the application, without starting the rest of it
+    private static void connect(DataSource dataSource) {
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setDataSource(dataSource);
+        entityManagerFactory.setPackagesToScan("com.example.multiaccount.model");
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        // Boot's snake_case column naming, the schema comes from the migrations only
+        entityManagerFactory.setJpaPropertyMap(Map.of(
+                AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                AvailableSettings.HBM2DDL_AUTO, "none"));
+        entityManagerFactory.afterPropertiesSet();
+        EntityManagerFactory emf = entityManagerFactory.getObject();
+
+        transactionManager = new JpaTransactionManager(emf);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        JpaRepositoryFactory factory = new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(emf));
+        blobs = factory.getRepository(FileBlobRepository.class);
+        uploads = factory.getRepository(UploadedFileRepository.class,
+                RepositoryComposition.RepositoryFragments.just(new UploadedFileRepositoryImpl(jdbcTemplate)));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (entityManagerFactory != null) {
+            entityManagerFactory.destroy();
+        }
+    }
+
+    @BeforeEach
+    void clear() {
+        jdbcTemplate.update("TRUNCATE uploaded_file, file_blob");
+    }
+
+    @Test
+    void acquireCountsReferences() {
+        assertThat(acquire(HASH)).isEqualTo(1);
+        assertThat(acquire(HASH)).isEqualTo(1);
+
+        assertThat(refCount(HASH)).isEqualTo(2);
+    }
+
+    @Test
+    void releaseStopsAtZero() {
+        acquire(HASH);
+
+        assertThat(release(HASH)).isZero();
+        assertThat(release(HASH)).isNull();
+        assertThat(refCount(HASH)).isZero();
+    }
+
+    @Test
+    void onlyUnreferencedBlobsCanBeClaimed() {
+        acquire(HASH);
+        assertThat(claim(HASH, LEASE_MS)).isZero();
+
+        release(HASH);
+
+        assertThat(claim(HASH, LEASE_MS)).isEqualTo(1);
+        assertThat(claim(HASH, LEASE_MS)).as("claimed twice").isZero();
+    }
+
+    @Test
+    void claimHoldsOffNewReferences() {
+        acquire(HASH);
+        release(HASH);
+        claim(HASH, LEASE_MS);
+
+        assertThat(acquire(HASH)).isZero();
+        assertThat(refCount(HASH)).isZero();
+        assertThat(blobs.findUnreferenced(10)).as("left to the claim holder, not the sweep").isEmpty();
+    }
+
+    @Test
+    void expiredClaimIsDroppedByTheNextReference() throws InterruptedException {
+        acquire(HASH);
+        release(HASH);
+        claim(HASH, 1);
+        Thread.sleep(50);
+
+        assertThat(blobs.findUnreferenced(10)).containsExactly(HASH);
+        assertThat(acquire(HASH)).isEqualTo(1);
+        assertThat(refCount(HASH)).isEqualTo(1);
+        assertThat(deleteRemoved(HASH)).isZero();
+        assertThat(blobs.findUnreferenced(10)).isEmpty();
+    }
+
+    @Test
+    void releasedClaimLetsReferencesThrough() {
+        acquire(HASH);
+        release(HASH);
+        claim(HASH, LEASE_MS);
+
+        transactionTemplate.execute(status -> blobs.releaseRemovalClaim(HASH));
+
+        assertThat(acquire(HASH)).isEqualTo(1);
+    }
+
+    @Test
+    void onlyClaimedRowsAreDeleted() {
+        acquire(HASH);
+        release(HASH);
+        assertThat(deleteRemoved(HASH)).isZero();
+
+        claim(HASH, LEASE_MS);
+
+        assertThat(deleteRemoved(HASH)).isEqualTo(1);
+        assertThat(blobs.existsById(HASH)).isFalse();
+    }
+
+    @Test
+    void uploadWaitsForARemovalThatHoldsNoRowLock() throws Exception {
+        FileStorage storage = spy(new LocalFileStorage(dir.toString()));
+        FileMetadataService service = service(storage);
+        byte[] data = "removed".getBytes();
+        String hash = sha256(data);
+        UploadedFile first = service.store("a.txt", stage(data), data.length, "text/plain", hash);
+        CountDownLatch deleting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(call -> {
+            deleting.countDown();
+            await(release);
+            return call.callRealMethod();
+        }).when(storage).delete("sha256-" + hash);
+
+        CompletableFuture<Boolean> delete = CompletableFuture.supplyAsync(() -> service.delete(first.getSavedName()));
+        assertThat(deleting.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<UploadedFile> upload;
+        try {
+            // NOWAIT fails straight away if anyone holds the row lock
+            assertThat(jdbcTemplate.queryForObject("SELECT ref_count FROM file_blob WHERE sha256 = ? FOR UPDATE NOWAIT",
+                    Integer.class, hash)).isZero();
+            // An upload of the same contents takes no reference to bytes that are about to go
+            Path staged = stage(data);
+            upload = CompletableFuture.supplyAsync(() -> store(service, "b.txt", staged, data, hash));
+            Thread.sleep(300);
+            assertThat(upload).isNotDone();
+            assertThat(refCount(hash)).isZero();
+        } finally {
+            release.countDown();
+        }
+
+        assertThat(delete.get(10, TimeUnit.SECONDS)).isTrue();
+        UploadedFile second = upload.get(10, TimeUnit.SECONDS);
+        // Stored again from its staged copy once the removal was done
+        assertThat(Files.readAllBytes(dir.resolve(second.getStorageKey()))).isEqualTo(data);
+        assertThat(refCount(hash)).isEqualTo(1);
+        assertThat(uploads.findAll()).extracting(UploadedFile::getSavedName).containsExactly(second.getSavedName());
+    }
+
+    @Test
+    void racingUploadsAndDeletesNeverReferenceRemovedContents() throws Exception {
+        FileMetadataService service = service(new LocalFileStorage(dir.toString()));
+        byte[] data = "raced".getBytes();
+        String hash = sha256(data);
+        UploadedFile latest = service.store("0.txt", stage(data), data.length, "text/plain", hash);
+
+        for (int i = 1; i <= 30; i++) {
+            String deleted = latest.getSavedName();
+            Path staged = stage(data);
+            String name = i + ".txt";
+            CountDownLatch start = new CountDownLatch(1);
+            CompletableFuture<Boolean> delete = CompletableFuture.supplyAsync(() -> {
+                await(start);
+                return service.delete(deleted);
+            });
+            CompletableFuture<UploadedFile> upload = CompletableFuture.supplyAsync(() -> {
+                await(start);
+                return store(service, name, staged, data, hash);
+            });
+            start.countDown();
+            assertThat(delete.get(10, TimeUnit.SECONDS)).isTrue();
+            latest = upload.get(10, TimeUnit.SECONDS);
+
+            assertThat(uploads.findAll()).extracting(UploadedFile::getSavedName).containsExactly(latest.getSavedName());
+            assertThat(refCount(hash)).as("round %d", i).isEqualTo(1);
+            assertThat(Files.readAllBytes(dir.resolve(latest.getStorageKey()))).as("round %d", i).isEqualTo(data);
+        }
+    }
+
+    private static UploadedFile store(FileMetadataService service, String name, Path staged, byte[] data, String hash) {
+        try {
+            return service.store(name, staged, data.length, "text/plain", hash);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FileMetadataService service(FileStorage storage) {
+        return new FileMetadataService(uploads, blobs, storage, transactionManager, dir.toString(), "local");
+    }
+
+    private int acquire(String hash) {
+        return transactionTemplate.execute(status -> blobs.acquire(hash, 5));
+    }
+
+    private Integer release(String hash) {
+        return transactionTemplate.execute(status -> blobs.release(hash));
+    }
+
+    private int claim(String hash, long leaseMs) {
+        return transactionTemplate.execute(status -> blobs.claimRemoval(hash, leaseMs));
+    }
+
+    private int deleteRemoved(String hash) {
+        return transactionTemplate.execute(status -> blobs.deleteRemoved(hash));
+    }
+
+    private int refCount(String hash) {
+        return jdbcTemplate.queryForObject("SELECT ref_count FROM file_blob WHERE sha256 = ?", Integer.class, hash);
+    }
+
+    private Path stage(byte[] data) throws IOException {
+        return Files.write(Files.createTempFile(dir, ".partial-", ""), data);
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
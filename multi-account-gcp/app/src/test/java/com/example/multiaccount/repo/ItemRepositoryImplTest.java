@@ -0,0 +1,139 @@
+package com.example.multiaccount.repo;
+
+import com.example.multiaccount.model.Item;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the hand-written item SQL (conditional update, keyset search) against
+ * a throwaway Postgres, the version docker-compose uses, with the schema built
+ * by the Flyway migrations. Skipped when no Docker daemon is available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ItemRepositoryImplTest {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    private static JdbcTemplate jdbcTemplate;
+
+    private ItemRepositoryImpl repo;
+
+    @BeforeAll
+    static void migrate() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("TRUNCATE item");
+        repo = new ItemRepositoryImpl(jdbcTemplate);
+    }
+
+    @Test
+    void unconditionalUpdateBumpsTheVersion() {
+        long id = insert("old", "old description");
+
+        Item updated = repo.updateReturning(id, "new", "new description", null).orElseThrow();
+
+        assertThat(updated.getName()).isEqualTo("new");
+        assertThat(updated.getDescription()).isEqualTo("new description");
+        assertThat(updated.getCreatedAt()).isNotNull();
+        assertThat(updated.getVersion()).isEqualTo(1L);
+        assertThat(repo.findVersion(id)).contains(1L);
+    }
+
+    @Test
+    void conditionalUpdateAppliesAtTheExpectedVersion() {
+        long id = insert("old", null);
+        repo.updateReturning(id, "v1", null, 0L).orElseThrow();
+
+        assertThat(repo.updateReturning(id, "v2", null, 1L)).map(Item::getVersion).contains(2L);
+    }
+
+    @Test
+    void staleVersionUpdatesNothing() {
+        long id = insert("old", null);
+        repo.updateReturning(id, "v1", null, null).orElseThrow();
+
+        assertThat(repo.updateReturning(id, "lost", null, 0L)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM item WHERE id = ?", String.class, id)).isEqualTo("v1");
+        assertThat(repo.findVersion(id)).contains(1L);
+    }
+
+    @Test
+    void unknownItemUpdatesNothing() {
+        assertThat(repo.updateReturning(-1L, "n", null, null)).isEmpty();
+        assertThat(repo.findVersion(-1L)).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    void searchRanksBestMatchFirstAndBreaksTiesByNewestId() {
+        long inDescription = insert("desk", "a lamp for the desk");
+        long tieOlder = insert("lamp", null);
+        long tieNewer = insert("lamp", null);
+        insert("chair", "no match");
+
+        List<ItemRepositoryCustom.SearchHit> hits = repo.search("lamp", null, null, 10);
+
+        // Name matches (weight A) outrank description matches (weight B)
+        assertThat(hits).extracting(hit -> hit.item().getId()).containsExactly(tieNewer, tieOlder, inDescription);
+        assertThat(hits.get(0).rank()).isEqualTo(hits.get(1).rank()).isGreaterThan(hits.get(2).rank());
+    }
+
+    @Test
+    void keysetPagesCoverEveryHitOnceInOrder() {
+        // Three rank levels with several ids each, so page boundaries fall inside runs of equal rank
+        for (int i = 0; i < 7; i++) {
+            insert("lamp", null);
+            insert("lamp lamp", "lamp");
+            insert("desk", "lamp");
+        }
+        List<ItemRepositoryCustom.SearchHit> all = repo.search("lamp", null, null, 100);
+        assertThat(all).hasSize(21);
+        assertThat(all.stream().map(ItemRepositoryCustom.SearchHit::rank).distinct()).hasSize(3);
+        assertThat(all).isSortedAccordingTo(Comparator
+                .comparing(ItemRepositoryCustom.SearchHit::rank, Comparator.reverseOrder())
+                .thenComparing(hit -> hit.item().getId(), Comparator.reverseOrder()));
+
+        List<Long> paged = new ArrayList<>();
+        List<ItemRepositoryCustom.SearchHit> page = repo.search("lamp", null, null, 4);
+        while (!page.isEmpty()) {
+            page.forEach(hit -> paged.add(hit.item().getId()));
+            ItemRepositoryCustom.SearchHit last = page.get(page.size() - 1);
+            page = repo.search("lamp", last.rank(), last.item().getId(), 4);
+        }
+
+        assertThat(paged).containsExactlyElementsOf(all.stream().map(hit -> hit.item().getId()).toList());
+    }
+
+    @Test
+    void pageAfterTheLastHitIsEmpty() {
+        insert("lamp", null);
+        ItemRepositoryCustom.SearchHit only = repo.search("lamp", null, null, 10).get(0);
+
+        assertThat(repo.search("lamp", only.rank(), only.item().getId(), 10)).isEmpty();
+    }
+
+    private long insert(String name, String description) {
+        return jdbcTemplate.queryForObject("INSERT INTO item (name, description) VALUES (?, ?) RETURNING id",
+                Long.class, name, description);
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.multiaccount.repo;
+
+import com.example.multiaccount.model.OutboxEvent;
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the outbox relay's lease queries through Spring Data JPA against a
+ * throwaway Postgres with the schema built by the Flyway migrations. Every
+ * call gets its own transaction, as in OutboxRelay, so NOW() moves between
+ * calls. Skipped when no Docker daemon is available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class OutboxRepositoryTest {
+
+    private static final long LEASE_MS = 30_000;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    private static LocalContainerEntityManagerFactoryBean entityManagerFactory;
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+    private static OutboxRepository outbox;
+
+    @BeforeAll
+    static void setUp() {
+        connect(new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()));
+    }
+
+    // Same wiring as the application, without starting the rest of it
+    private static void connect(DataSource dataSource) {
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setDataSource(dataSource);
+        entityManagerFactory.setPackagesToScan("com.example.multiaccount.model");
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        // Boot's snake_case column naming, the schema comes from the migrations only
+        entityManagerFactory.setJpaPropertyMap(Map.of(
+                AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                AvailableSettings.HBM2DDL_AUTO, "none"));
+        entityManagerFactory.afterPropertiesSet();
+        EntityManagerFactory emf = entityManagerFactory.getObject();
+
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(emf));
+        outbox = new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(emf))
+                .getRepository(OutboxRepository.class);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (entityManagerFactory != null) {
+            entityManagerFactory.destroy();
+        }
+    }
+
+    @BeforeEach
+    void clear() {
+        jdbcTemplate.update("TRUNCATE item_outbox");
+    }
+
+    @Test
+    void claimsTheOldestUnclaimedRowsUpToTheLimit() {
+        List<Long> ids = insert(3);
+
+        List<OutboxEvent> claimed = claim(2, LEASE_MS);
+
+        assertThat(claimed).extracting(OutboxEvent::getId).containsExactlyInAnyOrderElementsOf(ids.subList(0, 2));
+        OutboxEvent first = claimed.stream().filter(e -> e.getId().equals(ids.get(0))).findFirst().orElseThrow();
+        assertThat(first.getEventId()).isNotNull();
+        assertThat(first.getTraceId()).isNotNull();
+        assertThat(first.getTopic()).isEqualTo("item.created");
+        assertThat(first.getItemId()).isEqualTo(100L);
+        assertThat(first.getCreatedAt()).isNotNull();
+        assertThat(claimedUntil(ids.get(0))).isAfter(Instant.now().plusMillis(LEASE_MS / 2));
+        assertThat(claimedUntil(ids.get(2))).isNull();
+    }
+
+    @Test
+    void rowsUnderAnUnexpiredLeaseAreSkipped() {
+        List<Long> ids = insert(3);
+        claim(2, LEASE_MS);
+
+        assertThat(claim(10, LEASE_MS)).extracting(OutboxEvent::getId).containsExactly(ids.get(2));
+        assertThat(claim(10, LEASE_MS)).isEmpty();
+    }
+
+    @Test
+    void rowsAreClaimedAgainOnceTheLeaseRunsOut() throws InterruptedException {
+        List<Long> ids = insert(2);
+        claim(10, 1);
+        Thread.sleep(50);
+
+        assertThat(claim(10, LEASE_MS)).extracting(OutboxEvent::getId).containsExactlyInAnyOrderElementsOf(ids);
+    }
+
+    @Test
+    void releasedRowsCanBeClaimedRightAway() {
+        List<Long> ids = insert(3);
+        claim(3, LEASE_MS);
+
+        int released = transactionTemplate.execute(status -> outbox.releaseClaims(ids.subList(0, 2)));
+
+        assertThat(released).isEqualTo(2);
+        assertThat(claimedUntil(ids.get(0))).isNull();
+        assertThat(claim(10, LEASE_MS)).extracting(OutboxEvent::getId).containsExactlyInAnyOrderElementsOf(ids.subList(0, 2));
+    }
+
+    @Test
+    void publishedRowsAreDeleted() {
+        List<Long> ids = insert(3);
+        List<Long> claimed = claim(2, LEASE_MS).stream().map(OutboxEvent::getId).toList();
+
+        transactionTemplate.executeWithoutResult(status -> outbox.deleteAllByIdInBatch(claimed));
+
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM item_outbox", Long.class)).containsExactly(ids.get(2));
+    }
+
+    @Test
+    void concurrentClaimsSkipRowsLockedByEachOther() throws Exception {
+        List<Long> ids = insert(4);
+        CountDownLatch firstClaimed = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+
+        // The first relay keeps its claiming transaction (and the row locks) open while the second one claims
+        CompletableFuture<List<OutboxEvent>> first = CompletableFuture.supplyAsync(() ->
+                transactionTemplate.execute(status -> {
+                    List<OutboxEvent> claimed = outbox.claimBatch(2, LEASE_MS);
+                    firstClaimed.countDown();
+                    await(secondDone);
+                    return claimed;
+                }));
+        assertThat(firstClaimed.await(10, TimeUnit.SECONDS)).isTrue();
+        List<OutboxEvent> second = claim(10, LEASE_MS);
+        secondDone.countDown();
+
+        List<Long> firstIds = first.get(10, TimeUnit.SECONDS).stream().map(OutboxEvent::getId).toList();
+        List<Long> secondIds = second.stream().map(OutboxEvent::getId).toList();
+        assertThat(firstIds).hasSize(2);
+        assertThat(Stream.concat(firstIds.stream(), secondIds.stream())).containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(claim(10, LEASE_MS)).isEmpty();
+    }
+
+    private List<OutboxEvent> claim(int limit, long leaseMs) {
+        return transactionTemplate.execute(status -> outbox.claimBatch(limit, leaseMs));
+    }
+
+    private List<Long> insert(int count) {
+        UUID traceId = UUID.randomUUID();
+        List<OutboxEvent> events = LongStream.range(0, count)
+                .mapToObj(i -> new OutboxEvent("item.created", 100L + i, traceId)).toList();
+        return transactionTemplate.execute(status -> outbox.saveAll(events))
+                .stream().map(OutboxEvent::getId).sorted().toList();
+    }
+
+    private Instant claimedUntil(long id) {
+        Timestamp until = jdbcTemplate.queryForObject("SELECT claimed_until FROM item_outbox WHERE id = ?",
+                Timestamp.class, id);
+        return until != null ? until.toInstant() : null;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
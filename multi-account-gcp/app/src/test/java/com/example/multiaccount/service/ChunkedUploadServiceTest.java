@@ -0,0 +1,206 @@
+package com.example.multiaccount.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChunkedUploadServiceTest {
+
+    // The smallest chunk size the service accepts
+    private static final int CHUNK = 256 * 1024;
+
+    @TempDir
+    Path uploadDir;
+
+    private ChunkedUploadService uploads;
+    private byte[] data;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        uploads = new ChunkedUploadService(uploadDir.toString(), CHUNK, 1L << 30, 60);
+        // Three full chunks and a short last one
+        data = new byte[3 * CHUNK + 1234];
+        new Random(42).nextBytes(data);
+    }
+
+    @AfterEach
+    void closeSessions() {
+        uploads.shutdown();
+    }
+
+    @Test
+    void chunksInReverseOrderProduceTheWholeFileAndItsSha256() throws Exception {
+        String id = start(data.length);
+
+        for (int i = 3; i >= 0; i--) {
+            assertThat(send(id, i, null)).isTrue();
+        }
+        ChunkedUploadService.CompletedUpload done = uploads.complete(id, sha256(data));
+
+        assertThat(done.sha256()).isEqualTo(sha256(data));
+        assertThat(done.size()).isEqualTo(data.length);
+        assertThat(Files.readAllBytes(done.staged())).isEqualTo(data);
+    }
+
+    @Test
+    void duplicateChunkIsIgnoredWithoutReadingTheBody() throws Exception {
+        String id = start(data.length);
+        send(id, 1, null);
+
+        InputStream untouched = new ByteArrayInputStream(chunk(1));
+        assertThat(uploads.writeChunk(id, 1, chunk(1).length, null, untouched)).isFalse();
+        assertThat(untouched.available()).isEqualTo(chunk(1).length);
+
+        send(id, 0, null);
+        send(id, 2, null);
+        send(id, 3, null);
+        assertThat(uploads.complete(id, null).sha256()).isEqualTo(sha256(data));
+    }
+
+    @Test
+    void chunksSentInParallelHashCorrectly() throws Exception {
+        String id = start(data.length);
+        List<Integer> order = new ArrayList<>(List.of(0, 1, 2, 3));
+        Collections.shuffle(order, new Random(7));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> sent = new ArrayList<>();
+            for (int index : order) {
+                sent.add(pool.submit(() -> send(id, index, null)));
+            }
+            for (Future<Boolean> f : sent) {
+                assertThat(f.get()).isTrue();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(uploads.complete(id, null).sha256()).isEqualTo(sha256(data));
+    }
+
+    @Test
+    void crcMismatchRejectsTheChunkSoItCanBeResent() throws Exception {
+        String id = start(data.length);
+
+        assertThatThrownBy(() -> send(id, 0, "deadbeef"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("CRC32C");
+        assertThat(missing(id)).contains(0);
+
+        assertThat(send(id, 0, crc32c(chunk(0)))).isTrue();
+    }
+
+    @Test
+    void chunkOfTheWrongLengthIsRejected() throws Exception {
+        String id = start(data.length);
+
+        assertThatThrownBy(() -> uploads.writeChunk(id, 3, CHUNK, null, new ByteArrayInputStream(new byte[CHUNK])))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> uploads.writeChunk(id, 4, 1, null, new ByteArrayInputStream(new byte[1])))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void truncatedBodyIsRejected() throws Exception {
+        String id = start(data.length);
+        byte[] half = new byte[CHUNK / 2];
+
+        assertThatThrownBy(() -> uploads.writeChunk(id, 0, CHUNK, null, new ByteArrayInputStream(half)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("truncated");
+    }
+
+    @Test
+    void completeReportsMissingChunks() throws Exception {
+        String id = start(data.length);
+        send(id, 0, null);
+        send(id, 2, null);
+
+        assertThat(missing(id)).containsExactly(1, 3);
+        assertThatThrownBy(() -> uploads.complete(id, null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("2 chunks");
+    }
+
+    @Test
+    void sha256MismatchDiscardsTheUpload() throws Exception {
+        String id = start(data.length);
+        for (int i = 0; i < 4; i++) {
+            send(id, i, null);
+        }
+
+        assertThatThrownBy(() -> uploads.complete(id, "00".repeat(32)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(Files.exists(uploadDir.resolve(".partial").resolve(id))).isFalse();
+        assertThatThrownBy(() -> uploads.status(id)).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void emptyUploadCompletesWithoutChunks() throws Exception {
+        String id = start(0);
+
+        assertThat(uploads.complete(id, null).sha256()).isEqualTo(sha256(new byte[0]));
+    }
+
+    @Test
+    void chunkSizeIsClampedToTheAllowedRange() throws Exception {
+        Map<String, Object> status = uploads.init("f.bin", data.length, null, 1);
+
+        assertThat(status.get("chunkSize")).isEqualTo(CHUNK);
+        assertThat(status.get("chunkCount")).isEqualTo(4);
+    }
+
+    private String start(long size) throws IOException {
+        return (String) uploads.init("f.bin", size, "application/octet-stream", CHUNK).get("uploadId");
+    }
+
+    private boolean send(String id, int index, String crc) throws IOException {
+        byte[] chunk = chunk(index);
+        return uploads.writeChunk(id, index, chunk.length, crc, new ByteArrayInputStream(chunk));
+    }
+
+    private byte[] chunk(int index) {
+        int from = index * CHUNK;
+        int to = Math.min(from + CHUNK, data.length);
+        byte[] chunk = new byte[to - from];
+        System.arraycopy(data, from, chunk, 0, chunk.length);
+        return chunk;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Integer> missing(String id) {
+        return (List<Integer>) uploads.status(id).get("missingChunks");
+    }
+
+    private static String crc32c(byte[] bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.Item;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.net.ConnectException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Async mode against a mocked RabbitTemplate. Every send is recorded by event
+ * id, and {@link #broker} decides how the send and its confirm go.
+ */
+class EventPublisherTest {
+
+    private static final long CONFIRM_TIMEOUT_MS = 200;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final List<String> sends = new CopyOnWriteArrayList<>();
+    private volatile Broker broker = (eventId, attempt, correlation) -> ack(correlation);
+    private EventPublisher publisher;
+
+    interface Broker {
+        void onSend(String eventId, int attempt, CorrelationData correlation);
+    }
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        if (publisher != null) {
+            publisher.shutdown();
+        }
+    }
+
+    @Test
+    void batchSizeAboveMaxInFlightIsRejected() {
+        assertThatThrownBy(() -> new EventPublisher(rabbitTemplate, new WorkerLogBuffer(16), new SimpleMeterRegistry(),
+                CONFIRM_TIMEOUT_MS, true, 100, 11, 10, 50, MAX_ATTEMPTS, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("batch-size");
+    }
+
+    @Test
+    void batchSizeAboveMaxInFlightIsAllowedWithoutTheFlusher() {
+        new EventPublisher(rabbitTemplate, new WorkerLogBuffer(16), new SimpleMeterRegistry(),
+                CONFIRM_TIMEOUT_MS, false, 100, 11, 10, 50, MAX_ATTEMPTS, 10);
+    }
+
+    @Test
+    void acknowledgedEventsAreSentOnce() throws InterruptedException {
+        publisher = publisher(100);
+
+        publisher.publishAll("item.created", items(5));
+
+        awaitUntil(() -> publisher.getConfirmedCount() == 5);
+        assertThat(sends).hasSize(5).doesNotHaveDuplicates();
+        assertThat(publisher.getRetriedCount()).isZero();
+        assertThat(publisher.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void nackedEventIsRetriedWithTheSameIdThenDropped() throws InterruptedException {
+        broker = (eventId, attempt, correlation) -> correlation.getFuture().complete(new CorrelationData.Confirm(false, "nack"));
+        publisher = publisher(100);
+
+        publisher.publish("item.created", item(1));
+
+        awaitUntil(() -> publisher.getDroppedCount() == 1);
+        assertThat(sends).hasSize(MAX_ATTEMPTS).containsOnly(sends.get(0));
+        assertThat(publisher.getNackedCount()).isEqualTo(MAX_ATTEMPTS);
+        assertThat(publisher.getRetriedCount()).isEqualTo(MAX_ATTEMPTS - 1);
+        assertThat(publisher.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void nackedEventThatLaterSucceedsIsNotDropped() throws InterruptedException {
+        broker = (eventId, attempt, correlation) -> {
+            if (attempt == 1) {
+                correlation.getFuture().complete(new CorrelationData.Confirm(false, "nack"));
+            } else {
+                ack(correlation);
+            }
+        };
+        publisher = publisher(100);
+
+        publisher.publish("item.created", item(1));
+
+        awaitUntil(() -> publisher.getConfirmedCount() == 1 && publisher.getRetriedCount() == 1);
+        assertThat(sends).hasSize(2);
+        assertThat(publisher.getDroppedCount()).isZero();
+    }
+
+    @Test
+    void sendFailureReBuffersOnlyTheUnsentTail() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        broker = (eventId, attempt, correlation) -> {
+            if (calls.incrementAndGet() == 3) {
+                throw new AmqpConnectException(new ConnectException("connection reset"));
+            }
+            ack(correlation);
+        };
+        publisher = publisher(100);
+
+        publisher.publishAll("item.created", items(5));
+
+        awaitUntil(() -> publisher.getConfirmedCount() == 5);
+        // Only the event whose send threw goes out twice; the two before it are not sent again
+        Map<String, Integer> attempts = attemptsById();
+        assertThat(attempts).hasSize(5);
+        assertThat(attempts.get(sends.get(0))).isEqualTo(1);
+        assertThat(attempts.get(sends.get(1))).isEqualTo(1);
+        assertThat(attempts.get(sends.get(2))).isEqualTo(2);
+        assertThat(attempts.values()).containsOnly(1, 2).filteredOn(n -> n == 2).hasSize(1);
+        assertThat(publisher.getDroppedCount()).isZero();
+        assertThat(publisher.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void missingConfirmTimesOutAndReturnsThePermit() throws InterruptedException {
+        // The first send is never confirmed; one permit only, so the retry needs it back
+        broker = (eventId, attempt, correlation) -> {
+            if (attempt > 1) {
+                ack(correlation);
+            }
+        };
+        publisher = new EventPublisher(rabbitTemplate(), new WorkerLogBuffer(16), new SimpleMeterRegistry(),
+                CONFIRM_TIMEOUT_MS, true, 100, 1, 1, 50, MAX_ATTEMPTS, 10);
+
+        publisher.publish("item.created", item(1));
+
+        awaitUntil(() -> publisher.getConfirmedCount() == 1 && publisher.getRetriedCount() == 1);
+        assertThat(sends).hasSize(2).containsOnly(sends.get(0));
+        assertThat(publisher.getNackedCount()).isEqualTo(1);
+        assertThat(publisher.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void fullBufferPublishesOnTheCallerAndCountsAFailureAsDropped() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch flusherBlocked = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        broker = (eventId, attempt, correlation) -> {
+            int call = calls.incrementAndGet();
+            if (call == 1) {
+                // Keep the flusher busy so the one-slot buffer stays full
+                flusherBlocked.countDown();
+                await(release);
+                ack(correlation);
+            } else if (call == 2) {
+                // The caller's own send, while the broker is unreachable
+                throw new AmqpConnectException(new ConnectException("connection refused"));
+            } else {
+                ack(correlation);
+            }
+        };
+        publisher = new EventPublisher(rabbitTemplate(), new WorkerLogBuffer(16), new SimpleMeterRegistry(),
+                CONFIRM_TIMEOUT_MS, true, 1, 1, 10, 10, MAX_ATTEMPTS, 10);
+
+        publisher.publish("item.created", item(1));
+        assertThat(flusherBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+        publisher.publish("item.created", item(2));
+        publisher.publish("item.created", item(3));
+
+        assertThat(publisher.getDroppedCount()).isEqualTo(1);
+        assertThat(publisher.getFailedCount()).isEqualTo(1);
+        release.countDown();
+        awaitUntil(() -> publisher.getConfirmedCount() == 2);
+    }
+
+    @Test
+    void fullBufferFallbackWaitsForTheConfirm() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch flusherBlocked = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        broker = (eventId, attempt, correlation) -> {
+            if (calls.incrementAndGet() == 1) {
+                flusherBlocked.countDown();
+                await(release);
+                ack(correlation);
+            } else if (calls.get() == 2) {
+                // The caller's send is nacked: still a loss
+                correlation.getFuture().complete(new CorrelationData.Confirm(false, "nack"));
+            } else {
+                ack(correlation);
+            }
+        };
+        publisher = new EventPublisher(rabbitTemplate(), new WorkerLogBuffer(16), new SimpleMeterRegistry(),
+                CONFIRM_TIMEOUT_MS, true, 1, 1, 10, 10, MAX_ATTEMPTS, 10);
+
+        publisher.publish("item.created", item(1));
+        assertThat(flusherBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+        publisher.publish("item.created", item(2));
+        publisher.publish("item.created", item(3));
+
+        assertThat(publisher.getDroppedCount()).isEqualTo(1);
+        release.countDown();
+        awaitUntil(() -> publisher.getConfirmedCount() == 2);
+        assertThat(publisher.getDroppedCount()).isEqualTo(1);
+    }
+
+    private EventPublisher publisher(int bufferCapacity) {
+        return new EventPublisher(rabbitTemplate(), new WorkerLogBuffer(16), new SimpleMeterRegistry(),
+                CONFIRM_TIMEOUT_MS, true, bufferCapacity, 10, 10, 50, MAX_ATTEMPTS, 10);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RabbitTemplate rabbitTemplate() {
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation ->
+                ((RabbitOperations.OperationsCallback<Object>) invocation.getArgument(0)).doInRabbit(rabbitTemplate));
+        doAnswer(invocation -> {
+            CorrelationData correlation = invocation.getArgument(4);
+            String eventId = correlation.getId();
+            sends.add(eventId);
+            broker.onSend(eventId, (int) sends.stream().filter(eventId::equals).count(), correlation);
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class),
+                any(MessagePostProcessor.class), any(CorrelationData.class));
+        return rabbitTemplate;
+    }
+
+    private Map<String, Integer> attemptsById() {
+        Map<String, Integer> attempts = new ConcurrentHashMap<>();
+        sends.forEach(id -> attempts.merge(id, 1, Integer::sum));
+        return attempts;
+    }
+
+    private static void ack(CorrelationData correlation) {
+        correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met within 5s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<Item> items(int count) {
+        return LongStream.rangeClosed(1, count).mapToObj(EventPublisherTest::item).toList();
+    }
+
+    private static Item item(long id) {
+        Item item = new Item();
+        item.setId(id);
+        return item;
+    }
+}
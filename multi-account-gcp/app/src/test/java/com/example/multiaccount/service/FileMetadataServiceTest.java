@@ -0,0 +1,307 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.UploadedFile;
+import com.example.multiaccount.repo.FileBlobRepository;
+import com.example.multiaccount.repo.UploadedFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FileMetadataServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final UploadedFileRepository repo = mock(UploadedFileRepository.class);
+    private final FileBlobRepository blobs = mock(FileBlobRepository.class);
+    private final PlatformTransactionManager transactions = mock(PlatformTransactionManager.class);
+    private final AtomicInteger openTransactions = new AtomicInteger();
+    private LocalFileStorage storage;
+    private FileMetadataService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storage = spy(new LocalFileStorage(dir.toString()));
+        service = new FileMetadataService(repo, blobs, storage, transactions, dir.toString(), "local");
+        when(transactions.getTransaction(any())).thenAnswer(call -> {
+            openTransactions.incrementAndGet();
+            return new SimpleTransactionStatus();
+        });
+        doAnswer(call -> openTransactions.decrementAndGet()).when(transactions).commit(any());
+        doAnswer(call -> openTransactions.decrementAndGet()).when(transactions).rollback(any());
+        when(repo.save(any())).thenAnswer(call -> call.getArgument(0));
+        when(blobs.acquire(anyString(), anyLong())).thenReturn(1);
+    }
+
+    @Test
+    void storeUploadsBeforeOpeningTheTransaction() throws Exception {
+        byte[] data = "hello".getBytes();
+        String hash = sha256(data);
+        Path staged = stage(data);
+        when(transactions.getTransaction(any())).thenAnswer(call -> {
+            assertThat(dir.resolve("sha256-" + hash)).as("stored before the transaction").exists();
+            return new SimpleTransactionStatus();
+        });
+
+        UploadedFile saved = service.store("a.txt", staged, data.length, "text/plain", hash.toUpperCase());
+
+        assertThat(saved.getSha256()).isEqualTo(hash);
+        assertThat(saved.getStorageKey()).isEqualTo("sha256-" + hash);
+        assertThat(staged).doesNotExist();
+        assertThat(Files.readAllBytes(dir.resolve("sha256-" + hash))).isEqualTo(data);
+        InOrder order = inOrder(transactions, blobs, repo);
+        order.verify(transactions).getTransaction(any());
+        order.verify(blobs).acquire(hash, data.length);
+        order.verify(repo).save(any());
+        order.verify(transactions).commit(any());
+    }
+
+    @Test
+    void storeOfKnownContentsKeepsTheExistingBlob() throws Exception {
+        byte[] data = "same".getBytes();
+        String hash = sha256(data);
+        Path existing = Files.write(dir.resolve("sha256-" + hash), data);
+        long modified = Files.getLastModifiedTime(existing).toMillis();
+        Path staged = stage(data);
+
+        service.store("b.txt", staged, data.length, "text/plain", hash);
+
+        assertThat(staged).doesNotExist();
+        assertThat(Files.getLastModifiedTime(existing).toMillis()).isEqualTo(modified);
+        verify(blobs).acquire(hash, data.length);
+    }
+
+    @Test
+    void storeFailsIfItsOwnContentsWereRemovedBeforeTheReferenceWasTaken() throws Exception {
+        byte[] data = "racy".getBytes();
+        String hash = sha256(data);
+        // The freshly stored blob disappears just before the reference is taken; staged is gone by then
+        when(blobs.acquire(anyString(), anyLong())).thenAnswer(call -> {
+            Files.deleteIfExists(dir.resolve("sha256-" + hash));
+            return 1;
+        });
+
+        assertThatThrownBy(() -> service.store("c.txt", stage(data), data.length, "text/plain", hash))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("retry");
+        verify(repo, never()).save(any());
+        verify(transactions).commit(argThat(TransactionStatus::isRollbackOnly));
+    }
+
+    @Test
+    void storeReStoresKnownContentsRemovedBeforeTheReferenceWasTaken() throws Exception {
+        byte[] data = "racy".getBytes();
+        String hash = sha256(data);
+        Path blob = Files.write(dir.resolve("sha256-" + hash), data);
+        Path staged = stage(data);
+        // A concurrent delete of the last other upload removes the contents just before our reference
+        when(blobs.acquire(hash, data.length)).thenAnswer(call -> {
+            Files.delete(blob);
+            return 1;
+        }).thenReturn(1);
+
+        UploadedFile saved = service.store("c.txt", staged, data.length, "text/plain", hash);
+
+        assertThat(saved.getStorageKey()).isEqualTo("sha256-" + hash);
+        assertThat(Files.readAllBytes(blob)).isEqualTo(data);
+        assertThat(staged).doesNotExist();
+        InOrder order = inOrder(transactions, repo);
+        order.verify(transactions).commit(argThat(TransactionStatus::isRollbackOnly));
+        order.verify(repo).save(any());
+        order.verify(transactions).commit(argThat(status -> !status.isRollbackOnly()));
+    }
+
+    @Test
+    void storeStagedCopiesWithinStorageAndDeletesTheStagedObject() throws Exception {
+        byte[] data = "assembled".getBytes();
+        String hash = sha256(data);
+        Files.write(dir.resolve("staged-1"), data);
+
+        UploadedFile saved = service.storeStaged("d.txt", "staged-1", data.length, "text/plain", hash);
+
+        assertThat(saved.getStorageKey()).isEqualTo("sha256-" + hash);
+        assertThat(Files.readAllBytes(dir.resolve("sha256-" + hash))).isEqualTo(data);
+        assertThat(dir.resolve("staged-1")).doesNotExist();
+        verify(storage).copy("staged-1", "sha256-" + hash);
+    }
+
+    @Test
+    void storeStagedCopiesAgainIfItsOwnContentsWereRemoved() throws Exception {
+        byte[] data = "assembled".getBytes();
+        String hash = sha256(data);
+        Files.write(dir.resolve("staged-2"), data);
+        // The staged object outlives the first copy, so unlike a staged file it can be put back
+        when(blobs.acquire(hash, data.length)).thenAnswer(call -> {
+            Files.delete(dir.resolve("sha256-" + hash));
+            return 1;
+        }).thenReturn(1);
+
+        service.storeStaged("e.txt", "staged-2", data.length, "text/plain", hash);
+
+        assertThat(Files.readAllBytes(dir.resolve("sha256-" + hash))).isEqualTo(data);
+        assertThat(dir.resolve("staged-2")).doesNotExist();
+        verify(storage, times(2)).copy("staged-2", "sha256-" + hash);
+    }
+
+    @Test
+    void storeWaitsForARemovalOfTheContentsThatHoldsItsClaim() throws Exception {
+        byte[] data = "claimed".getBytes();
+        String hash = sha256(data);
+        Path blob = Files.write(dir.resolve("sha256-" + hash), data);
+        when(blobs.acquire(hash, data.length)).thenReturn(0, 1);
+        when(blobs.isBeingRemoved(hash)).thenReturn(true, true).thenAnswer(call -> {
+            Files.delete(blob);
+            return false;
+        });
+
+        service.store("c.txt", stage(data), data.length, "text/plain", hash);
+
+        verify(blobs, times(3)).isBeingRemoved(hash);
+        assertThat(Files.readAllBytes(blob)).isEqualTo(data);
+        verify(repo).save(any());
+    }
+
+    @Test
+    void storeRetriesTheReferenceOnlyOnce() throws Exception {
+        byte[] data = "claimed".getBytes();
+        String hash = sha256(data);
+        when(blobs.acquire(hash, data.length)).thenReturn(0);
+
+        assertThatThrownBy(() -> service.store("c.txt", stage(data), data.length, "text/plain", hash))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("retry");
+        verify(blobs, times(2)).acquire(hash, data.length);
+        verify(repo, never()).save(any());
+        verify(transactions, times(2)).commit(argThat(TransactionStatus::isRollbackOnly));
+    }
+
+    @Test
+    void deletingTheLastReferenceRemovesTheContentsOutsideAnyTransaction() throws Exception {
+        String hash = "ab".repeat(32);
+        Path blob = Files.write(dir.resolve("sha256-" + hash), new byte[] {1});
+        when(repo.findBySavedName("f")).thenReturn(Optional.of(upload("sha256-" + hash)));
+        when(blobs.release(hash)).thenReturn(0);
+        when(blobs.claimRemoval(hash, FileMetadataService.BLOB_REMOVAL_LEASE_MS)).thenAnswer(call -> {
+            // Only once the delete has committed
+            verify(transactions).commit(any());
+            return 1;
+        });
+        doAnswer(call -> {
+            assertThat(openTransactions).as("transactions open during the storage delete").hasValue(0);
+            return call.callRealMethod();
+        }).when(storage).delete("sha256-" + hash);
+
+        assertThat(service.delete("f")).isTrue();
+
+        assertThat(blob).doesNotExist();
+        InOrder order = inOrder(blobs, storage);
+        order.verify(blobs).claimRemoval(hash, FileMetadataService.BLOB_REMOVAL_LEASE_MS);
+        order.verify(storage).delete("sha256-" + hash);
+        order.verify(blobs).deleteRemoved(hash);
+        assertThat(openTransactions).hasValue(0);
+    }
+
+    @Test
+    void failedRemovalHandsTheClaimBack() throws Exception {
+        String hash = "34".repeat(32);
+        when(repo.findBySavedName("f")).thenReturn(Optional.of(upload("sha256-" + hash)));
+        when(blobs.release(hash)).thenReturn(0);
+        when(blobs.claimRemoval(hash, FileMetadataService.BLOB_REMOVAL_LEASE_MS)).thenReturn(1);
+        doThrow(new IOException("storage unavailable")).when(storage).delete("sha256-" + hash);
+
+        assertThat(service.delete("f")).isTrue();
+
+        verify(blobs).releaseRemovalClaim(hash);
+        verify(blobs, never()).deleteRemoved(anyString());
+    }
+
+    @Test
+    void deletingAnotherReferenceKeepsTheContents() throws Exception {
+        String hash = "cd".repeat(32);
+        Path blob = Files.write(dir.resolve("sha256-" + hash), new byte[] {1});
+        when(repo.findBySavedName("f")).thenReturn(Optional.of(upload("sha256-" + hash)));
+        when(blobs.release(hash)).thenReturn(2);
+
+        assertThat(service.delete("f")).isTrue();
+
+        assertThat(blob).exists();
+        verify(blobs, never()).claimRemoval(anyString(), anyLong());
+    }
+
+    @Test
+    void missingBlobRowIsNotTakenAsTheLastReference() throws Exception {
+        String hash = "ef".repeat(32);
+        Path blob = Files.write(dir.resolve("sha256-" + hash), new byte[] {1});
+        when(repo.findBySavedName("f")).thenReturn(Optional.of(upload("sha256-" + hash)));
+        when(blobs.release(hash)).thenReturn(null);
+
+        assertThat(service.delete("f")).isTrue();
+
+        assertThat(blob).exists();
+        verify(blobs, never()).claimRemoval(anyString(), anyLong());
+    }
+
+    @Test
+    void contentsReacquiredBeforeCleanupAreKept() throws Exception {
+        String hash = "12".repeat(32);
+        Path blob = Files.write(dir.resolve("sha256-" + hash), new byte[] {1});
+        when(repo.findBySavedName("f")).thenReturn(Optional.of(upload("sha256-" + hash)));
+        when(blobs.release(hash)).thenReturn(0);
+        when(blobs.claimRemoval(hash, FileMetadataService.BLOB_REMOVAL_LEASE_MS)).thenReturn(0);
+
+        assertThat(service.delete("f")).isTrue();
+
+        assertThat(blob).exists();
+        verify(blobs, never()).deleteRemoved(anyString());
+    }
+
+    @Test
+    void unknownUploadIsNotDeleted() {
+        when(repo.findBySavedName("nope")).thenReturn(Optional.empty());
+
+        assertThat(service.delete("nope")).isFalse();
+    }
+
+    private Path stage(byte[] data) throws IOException {
+        return Files.write(dir.resolve(".partial-" + System.nanoTime()), data);
+    }
+
+    private static UploadedFile upload(String key) {
+        UploadedFile file = new UploadedFile();
+        file.setSavedName("f");
+        file.setStorageKey(key);
+        return file;
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.Item;
+import com.example.multiaccount.repo.ItemRepository;
+import com.example.multiaccount.repo.ItemRepositoryCustom;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ItemServiceTest {
+
+    private final ItemRepository repo = mock(ItemRepository.class);
+    private final ItemCache cache = mock(ItemCache.class);
+    private final ItemEvents events = mock(ItemEvents.class);
+    private final ItemService service = new ItemService(repo, cache, events, new SimpleMeterRegistry());
+
+    // Stands in for the @Transactional proxy: synchronizations are collected, then committed or rolled back by hand
+    @BeforeEach
+    void beginTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void endTransaction() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void updateCachesAfterCommitAndPublishesTheReturnedRow() {
+        Item row = item(1L, 4L);
+        when(repo.updateReturning(1L, "n", "d", 3L)).thenReturn(Optional.of(row));
+
+        assertThat(service.update(1L, item(null, null), 3L)).isSameAs(row);
+        verify(events).publish("item.updated", row);
+        verify(repo, never()).findVersion(any());
+        verify(cache, never()).put(any());
+
+        commit();
+        verify(cache).put(row);
+    }
+
+    @Test
+    void createCachesOnlyOnceCommitted() {
+        Item row = item(7L, 0L);
+        when(repo.save(any())).thenReturn(row);
+
+        assertThat(service.create(item(null, 3L))).isSameAs(row);
+        verify(events).publish("item.created", row);
+        verify(cache, never()).put(any());
+
+        commit();
+        verify(cache).put(row);
+    }
+
+    @Test
+    void rolledBackCreateIsNeverCached() {
+        List<Item> rows = List.of(item(7L, 0L), item(8L, 0L));
+        when(repo.saveAll(any())).thenReturn(rows);
+        when(repo.save(any())).thenReturn(item(9L, 0L));
+
+        service.createAll(List.of(item(null, null), item(null, null)));
+        service.create(item(null, null));
+        rollback();
+
+        verify(cache, never()).put(any());
+        verify(cache, never()).putAll(anyList());
+    }
+
+    @Test
+    void staleVersionFailsWithTheCurrentOne() {
+        when(repo.updateReturning(1L, "n", "d", 3L)).thenReturn(Optional.empty());
+        when(repo.findVersion(1L)).thenReturn(Optional.of(5L));
+
+        assertThatThrownBy(() -> service.update(1L, item(null, null), 3L))
+                .isInstanceOf(OptimisticLockingFailureException.class)
+                .hasMessage("Item 1 is at version 5, not 3");
+        verify(cache, never()).put(any());
+        verify(events, never()).publish(anyString(), any());
+    }
+
+    @Test
+    void missingItemFailsWithNoSuchElement() {
+        when(repo.updateReturning(1L, "n", "d", null)).thenReturn(Optional.empty());
+        when(repo.findVersion(1L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.update(1L, item(null, null), null))
+                .isInstanceOf(NoSuchElementException.class);
+        verify(cache, never()).put(any());
+        verify(events, never()).publish(anyString(), any());
+    }
+
+    @Test
+    void searchPassesTheCursorPosition() {
+        ItemRepositoryCustom.SearchHit hit = new ItemRepositoryCustom.SearchHit(item(7L, 0L), 0.25f);
+        when(repo.search("q", null, null, 2)).thenReturn(List.of(hit));
+
+        List<ItemRepositoryCustom.SearchHit> first = service.search("q", null, 2);
+        service.search("q", ItemService.SearchCursor.after(first.get(0)), 2);
+
+        verify(repo).search("q", 0.25f, 7L, 2);
+    }
+
+    @Test
+    void cursorRoundTripsExactly() {
+        for (float rank : new float[] {0f, 0.0607927f, 1e-20f, Float.MIN_VALUE, Float.MAX_VALUE, -0.5f, -0f}) {
+            ItemService.SearchCursor cursor = new ItemService.SearchCursor(rank, Long.MAX_VALUE);
+
+            ItemService.SearchCursor read = ItemService.SearchCursor.decode(cursor.encode());
+
+            assertThat(Float.floatToIntBits(read.rank())).isEqualTo(Float.floatToIntBits(rank));
+            assertThat(read.id()).isEqualTo(Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    void cursorWithNegativeFloatBitsRoundTrips() {
+        // Ranks with the sign bit set encode as negative ints, so the token carries a leading '-'
+        ItemService.SearchCursor cursor = new ItemService.SearchCursor(-1.5f, -3L);
+
+        assertThat(raw(cursor.encode())).startsWith("-");
+        assertThat(ItemService.SearchCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void cursorTokenIsUrlSafe() {
+        assertThat(new ItemService.SearchCursor(-0.123f, 123456789L).encode()).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void invalidCursorTokensAreRejected() {
+        for (String token : new String[] {
+                "not base64!", "a", token("1036831949"), token("1036831949:"), token(":7"), token("1:2:3"),
+                token("1036831949:7:"), token("abc:7"), token("1036831949:x"), token("1.5:7"), token("99999999999:7"), ""}) {
+            assertThatThrownBy(() -> ItemService.SearchCursor.decode(token))
+                    .as(token).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private static void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    private static void rollback() {
+        TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String raw(String token) {
+        return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+    }
+
+    private static Item item(Long id, Long version) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName("n");
+        item.setDescription("d");
+        item.setVersion(version);
+        return item;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.model.OutboxEvent;
+import com.example.multiaccount.repo.OutboxRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private static final int BATCH_SIZE = 3;
+    private static final long LEASE_MS = 30_000;
+
+    private final OutboxRepository outbox = mock(OutboxRepository.class);
+    private final EventPublisher publisher = mock(EventPublisher.class);
+    private final OutboxRelay relay = new OutboxRelay(outbox, publisher, mock(PlatformTransactionManager.class),
+            BATCH_SIZE, LEASE_MS, 2, 5000);
+
+    @Test
+    void fullBatchesAreDrainedUpToTheLimitPerRun() {
+        when(outbox.claimBatch(BATCH_SIZE, LEASE_MS)).thenReturn(events(1, 3), events(4, 3), events(7, 3));
+
+        relay.relay();
+
+        verify(outbox, times(2)).claimBatch(BATCH_SIZE, LEASE_MS);
+        verify(publisher, times(2)).publishConfirmed(anyList());
+        verify(outbox).deleteAllByIdInBatch(List.of(1L, 2L, 3L));
+        verify(outbox).deleteAllByIdInBatch(List.of(4L, 5L, 6L));
+    }
+
+    @Test
+    void shortBatchEndsTheRun() {
+        when(outbox.claimBatch(BATCH_SIZE, LEASE_MS)).thenReturn(events(1, 2));
+
+        relay.relay();
+
+        verify(outbox).claimBatch(BATCH_SIZE, LEASE_MS);
+        verify(outbox).deleteAllByIdInBatch(List.of(1L, 2L));
+    }
+
+    @Test
+    void failedPublishReleasesTheClaimsAndKeepsTheRows() {
+        when(outbox.claimBatch(BATCH_SIZE, LEASE_MS)).thenReturn(events(1, 3));
+        doThrow(new AmqpException("no confirm")).when(publisher).publishConfirmed(anyList());
+
+        relay.relay();
+
+        verify(outbox).releaseClaims(List.of(1L, 2L, 3L));
+        verify(outbox, never()).deleteAllByIdInBatch(any());
+        verify(outbox).claimBatch(BATCH_SIZE, LEASE_MS);
+    }
+
+    @Test
+    void leaseMustOutlastTheConfirmWait() {
+        assertThatThrownBy(() -> new OutboxRelay(outbox, publisher, mock(PlatformTransactionManager.class),
+                BATCH_SIZE, 5000, 2, 5000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<OutboxEvent> events(long firstId, int count) {
+        return LongStream.range(firstId, firstId + count).mapToObj(id -> {
+            OutboxEvent event = new OutboxEvent("item.created", id, UUID.randomUUID());
+            event.setId(id);
+            return event;
+        }).toList();
+    }
+}
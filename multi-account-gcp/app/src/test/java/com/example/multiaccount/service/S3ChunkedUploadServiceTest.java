@@ -0,0 +1,285 @@
+package com.example.multiaccount.service;
+
+import com.example.multiaccount.repo.UploadSessionRepository;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs chunked uploads on S3 storage against a throwaway Postgres and MinIO,
+ * with two service instances standing in for two replicas that share the
+ * database and the bucket. Skipped when no Docker daemon is available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class S3ChunkedUploadServiceTest {
+
+    private static final int CHUNK = 5 * 1024 * 1024;
+    private static final String BUCKET = "uploads-test";
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @Container
+    static final GenericContainer<?> minio = new GenericContainer<>("minio/minio:RELEASE.2023-09-04T19-57-37Z")
+            .withCommand("server", "/data")
+            .withEnv("MINIO_ROOT_USER", "minioadmin")
+            .withEnv("MINIO_ROOT_PASSWORD", "minioadmin")
+            .withExposedPorts(9000)
+            .waitingFor(Wait.forHttp("/minio/health/live").forPort(9000));
+
+    private static JdbcTemplate jdbcTemplate;
+    private static S3FileStorage storage;
+    private static S3ChunkedUploadService replicaA;
+    private static S3ChunkedUploadService replicaB;
+
+    @BeforeAll
+    static void setUp() {
+        connect(new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()),
+                "http://" + minio.getHost() + ":" + minio.getMappedPort(9000));
+    }
+
+    private static void connect(DataSource dataSource, String endpoint) {
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        storage = new S3FileStorage(endpoint, "minioadmin", "minioadmin", BUCKET, "us-east-1", CHUNK, 2, 2);
+        replicaA = replica(dataSource, 60);
+        replicaB = replica(dataSource, 60);
+    }
+
+    private static S3ChunkedUploadService replica(DataSource dataSource, long sessionTtlMinutes) {
+        return new S3ChunkedUploadService(new UploadSessionRepository(jdbcTemplate), storage,
+                new DataSourceTransactionManager(dataSource), CHUNK, 1L << 30, sessionTtlMinutes);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (storage != null) {
+            storage.shutdown();
+        }
+    }
+
+    @BeforeEach
+    void clear() {
+        jdbcTemplate.update("DELETE FROM upload_session");
+    }
+
+    @Test
+    void chunksSentToDifferentReplicasMakeOneUpload() throws Exception {
+        byte[] data = randomBytes(2 * CHUNK + 1234);
+        String id = init(replicaA, data.length);
+
+        // Last chunk first, each replica taking every other one
+        write(replicaB, id, 2, data);
+        write(replicaA, id, 1, data);
+        assertThat(replicaB.status(id).get("missingChunks")).isEqualTo(List.of(0));
+        write(replicaB, id, 0, data);
+        ChunkedUploads.CompletedUpload done = replicaA.complete(id, sha256(data));
+
+        assertThat(done.staged()).isNull();
+        assertThat(done.sha256()).isEqualTo(sha256(data));
+        assertThat(done.size()).isEqualTo(data.length);
+        try (InputStream in = storage.open(done.stagedKey(), 0, data.length)) {
+            assertThat(in.readAllBytes()).isEqualTo(data);
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM upload_session_part", Integer.class)).isZero();
+        assertThatThrownBy(() -> replicaB.status(id)).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void chunksSentInParallelAreAllRecorded() throws Exception {
+        byte[] data = randomBytes(4 * CHUNK);
+        String id = init(replicaA, data.length);
+
+        List<CompletableFuture<Boolean>> writes = IntStream.range(0, 4)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> write(i % 2 == 0 ? replicaA : replicaB, id, i, data)))
+                .toList();
+        for (CompletableFuture<Boolean> write : writes) {
+            assertThat(write.get(60, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(replicaB.complete(id, null).sha256()).isEqualTo(sha256(data));
+    }
+
+    @Test
+    void chunkSentAgainIsNotRead() throws Exception {
+        byte[] data = randomBytes(CHUNK + 10);
+        String id = init(replicaA, data.length);
+        write(replicaA, id, 0, data);
+
+        InputStream unread = new ByteArrayInputStream(new byte[CHUNK]);
+        assertThat(replicaB.writeChunk(id, 0, CHUNK, null, unread)).isFalse();
+
+        assertThat(unread.available()).isEqualTo(CHUNK);
+        assertThat(replicaB.status(id).get("receivedChunks")).isEqualTo(1);
+    }
+
+    @Test
+    void corruptChunkIsLeftMissingUntilSentAgain() throws Exception {
+        byte[] data = randomBytes(CHUNK + 10);
+        String id = init(replicaA, data.length);
+        byte[] corrupt = Arrays.copyOfRange(data, 0, CHUNK);
+        corrupt[100] ^= 1;
+
+        assertThatThrownBy(() -> replicaA.writeChunk(id, 0, CHUNK, crc32c(data, 0, CHUNK),
+                new ByteArrayInputStream(corrupt)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("CRC32C");
+        assertThat(replicaA.status(id).get("receivedChunks")).isEqualTo(0);
+
+        write(replicaB, id, 0, data);
+        write(replicaB, id, 1, data);
+        assertThat(replicaA.complete(id, null).sha256()).isEqualTo(sha256(data));
+    }
+
+    @Test
+    void truncatedChunkIsRejected() throws Exception {
+        byte[] data = randomBytes(CHUNK + 10);
+        String id = init(replicaA, data.length);
+
+        assertThatThrownBy(() -> replicaA.writeChunk(id, 0, CHUNK, null,
+                new ByteArrayInputStream(data, 0, CHUNK - 100)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("truncated");
+        assertThat(replicaA.status(id).get("receivedChunks")).isEqualTo(0);
+    }
+
+    @Test
+    void completeWithMissingChunksKeepsTheSession() throws Exception {
+        byte[] data = randomBytes(CHUNK + 10);
+        String id = init(replicaA, data.length);
+        write(replicaA, id, 1, data);
+
+        assertThatThrownBy(() -> replicaB.complete(id, null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("1 chunks are still missing");
+
+        write(replicaA, id, 0, data);
+        assertThat(replicaB.complete(id, null).sha256()).isEqualTo(sha256(data));
+    }
+
+    @Test
+    void onlyOneCompleteWins() throws Exception {
+        byte[] data = randomBytes(10);
+        String id = init(replicaA, data.length);
+        write(replicaA, id, 0, data);
+
+        replicaA.complete(id, null);
+
+        assertThatThrownBy(() -> replicaB.complete(id, null)).isInstanceOf(NoSuchElementException.class);
+        assertThatThrownBy(() -> replicaB.writeChunk(id, 0, data.length, null, new ByteArrayInputStream(data)))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void shaMismatchDiscardsTheUpload() throws Exception {
+        byte[] data = randomBytes(10);
+        String id = init(replicaA, data.length);
+        write(replicaA, id, 0, data);
+
+        assertThatThrownBy(() -> replicaB.complete(id, "00".repeat(32)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("SHA-256 mismatch");
+
+        assertThat(storage.stat("partial/" + id)).isEmpty();
+    }
+
+    @Test
+    void emptyFileHasNoChunks() throws Exception {
+        String id = init(replicaA, 0);
+
+        ChunkedUploads.CompletedUpload done = replicaB.complete(id, null);
+
+        assertThat(done.sha256()).isEqualTo(sha256(new byte[0]));
+        assertThat(storage.stat(done.stagedKey())).hasValueSatisfying(o -> assertThat(o.size()).isZero());
+    }
+
+    @Test
+    void smallChunkSizesAreRaisedToTheSmallestPart() throws Exception {
+        Map<String, Object> status = replicaA.init("a.bin", 3L * CHUNK, "application/octet-stream", 1024);
+
+        assertThat(status.get("chunkSize")).isEqualTo(CHUNK);
+        assertThat(status.get("chunkCount")).isEqualTo(3);
+    }
+
+    @Test
+    void abortedUploadIsGone() throws Exception {
+        byte[] data = randomBytes(10);
+        String id = init(replicaA, data.length);
+
+        replicaB.abort(id);
+
+        assertThatThrownBy(() -> replicaA.status(id)).isInstanceOf(NoSuchElementException.class);
+        assertThatThrownBy(() -> replicaA.abort(id)).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void idleSessionsExpire() throws Exception {
+        String id = init(replicaA, 10);
+        init(replicaA, 10);
+
+        replica(jdbcTemplate.getDataSource(), 0).expireIdleSessions();
+
+        assertThatThrownBy(() -> replicaB.status(id)).isInstanceOf(NoSuchElementException.class);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM upload_session", Integer.class)).isZero();
+    }
+
+    private static String init(S3ChunkedUploadService replica, long size) throws IOException {
+        return (String) replica.init("data.bin", size, "application/octet-stream", CHUNK).get("uploadId");
+    }
+
+    private static boolean write(S3ChunkedUploadService replica, String id, int index, byte[] data) {
+        int offset = index * CHUNK;
+        int length = Math.min(CHUNK, data.length - offset);
+        try {
+            return replica.writeChunk(id, index, length, crc32c(data, offset, length),
+                    new ByteArrayInputStream(data, offset, length));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String crc32c(byte[] data, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, offset, length);
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.multiaccount.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs S3FileStorage against a throwaway MinIO container, the same server
+ * docker-compose uses. Skipped when no Docker daemon is available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class S3FileStorageTest {
+
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+    private static final String BUCKET = "uploads-test";
+
+    @Container
+    static final GenericContainer<?> minio = new GenericContainer<>("minio/minio:RELEASE.2023-09-04T19-57-37Z")
+            .withCommand("server", "/data")
+            .withEnv("MINIO_ROOT_USER", "minioadmin")
+            .withEnv("MINIO_ROOT_PASSWORD", "minioadmin")
+            .withExposedPorts(9000)
+            .waitingFor(Wait.forHttp("/minio/health/live").forPort(9000));
+
+    private S3FileStorage storage;
+    private S3Client s3;
+
+    @BeforeEach
+    void setUp() {
+        String endpoint = "http://" + minio.getHost() + ":" + minio.getMappedPort(9000);
+        // Two buffers for three parts, so the pool has to recycle
+        storage = new S3FileStorage(endpoint, "minioadmin", "minioadmin", BUCKET, "us-east-1", PART_SIZE, 2, 4);
+        s3 = S3Client.builder()
+                .endpointOverride(URI.create(endpoint))
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("minioadmin", "minioadmin")))
+                .forcePathStyle(true)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.shutdown();
+        s3.close();
+    }
+
+    @Test
+    void smallObjectRoundTrips() throws IOException {
+        byte[] data = randomBytes(1000);
+
+        storage.store("small", new ByteArrayInputStream(data), data.length, "application/octet-stream");
+
+        assertThat(storage.stat("small")).hasValueSatisfying(o -> assertThat(o.size()).isEqualTo(data.length));
+        try (InputStream in = storage.open("small", 0, data.length)) {
+            assertThat(in.readAllBytes()).isEqualTo(data);
+        }
+    }
+
+    @Test
+    void objectLargerThanOnePartIsUploadedInParts(@org.junit.jupiter.api.io.TempDir Path dir) throws IOException {
+        byte[] data = randomBytes(2 * PART_SIZE + 12345);
+        Path staged = Files.write(dir.resolve("staged"), data);
+
+        storage.store("large", staged, "application/octet-stream");
+
+        assertThat(staged).doesNotExist();
+        // MinIO reports multipart objects with an ETag of "<md5>-<part count>"
+        assertThat(s3.headObject(b -> b.bucket(BUCKET).key("large")).eTag()).endsWith("-3\"");
+        try (InputStream in = storage.open("large", 0, data.length)) {
+            assertThat(in.readAllBytes()).isEqualTo(data);
+        }
+    }
+
+    @Test
+    void rangedReadReturnsOnlyTheRequestedBytes() throws IOException {
+        byte[] data = randomBytes(PART_SIZE + 100);
+        storage.store("ranged", new ByteArrayInputStream(data), data.length, "application/octet-stream");
+
+        // A range that spans the part boundary
+        int offset = PART_SIZE - 50;
+        try (InputStream in = storage.open("ranged", offset, 100)) {
+            assertThat(in.readAllBytes()).isEqualTo(Arrays.copyOfRange(data, offset, offset + 100));
+        }
+    }
+
+    @Test
+    void failedPartAbortsTheMultipartUpload() {
+        byte[] data = randomBytes(3 * PART_SIZE);
+        // The first part goes out, then reading the second one fails
+        InputStream failing = new FilterInputStream(new ByteArrayInputStream(data)) {
+            private long read;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (read >= PART_SIZE) {
+                    throw new IOException("connection reset");
+                }
+                int n = super.read(b, off, (int) Math.min(len, PART_SIZE - read));
+                read += Math.max(n, 0);
+                return n;
+            }
+        };
+
+        assertThatThrownBy(() -> storage.store("aborted", failing, data.length, "application/octet-stream"))
+                .isInstanceOf(IOException.class);
+
+        assertThat(s3.listMultipartUploads(b -> b.bucket(BUCKET).prefix("aborted")).uploads()).isEmpty();
+        assertThat(s3.listObjectsV2(b -> b.bucket(BUCKET).prefix("aborted")).contents()).isEmpty();
+    }
+
+    @Test
+    void streamEndingEarlyAbortsTheMultipartUpload() {
+        byte[] data = randomBytes(PART_SIZE + 10);
+
+        assertThatThrownBy(() -> storage.store("short", new ByteArrayInputStream(data), 2L * PART_SIZE,
+                "application/octet-stream"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("early");
+
+        assertThat(s3.listMultipartUploads(b -> b.bucket(BUCKET).prefix("short")).uploads()).isEmpty();
+    }
+
+    @Test
+    void deleteRemovesTheObject() throws IOException {
+        storage.store("gone", new ByteArrayInputStream(new byte[10]), 10, "application/octet-stream");
+
+        storage.delete("gone");
+
+        assertThat(storage.stat("gone")).isEmpty();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.multiaccount.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int WAITERS = 7;
+
+    private final SingleFlight<String, Object> flight = new SingleFlight<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void sequentialCallsEachLoad() {
+        assertThat(flight.run("k", () -> loads.incrementAndGet())).isEqualTo(1);
+        assertThat(flight.run("k", () -> loads.incrementAndGet())).isEqualTo(2);
+
+        assertThat(flight.getCoalesced()).isZero();
+    }
+
+    @Test
+    void concurrentCallsForOneKeyShareOneLoad() throws Exception {
+        Object value = new Object();
+
+        List<Future<Object>> results = runConcurrently(() -> value);
+
+        for (Future<Object> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isSameAs(value);
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(flight.getCoalesced()).isEqualTo(WAITERS);
+    }
+
+    @Test
+    void differentKeysLoadConcurrently() throws Exception {
+        CountDownLatch bothLoading = new CountDownLatch(2);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (String key : new String[] {"a", "b"}) {
+                results.add(pool.submit(() -> flight.run(key, () -> {
+                    bothLoading.countDown();
+                    // Only returns if the other key's loader is running at the same time
+                    return await(bothLoading) ? key : null;
+                })));
+            }
+
+            assertThat(results.get(0).get(10, TimeUnit.SECONDS)).isEqualTo("a");
+            assertThat(results.get(1).get(10, TimeUnit.SECONDS)).isEqualTo("b");
+            assertThat(flight.getCoalesced()).isZero();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void loaderExceptionReachesEveryWaiter() throws Exception {
+        IllegalStateException failure = new IllegalStateException("database down");
+
+        List<Future<Object>> results = runConcurrently(() -> {
+            throw failure;
+        });
+
+        for (Future<Object> result : results) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isSameAs(failure);
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(flight.run("k", () -> "loaded")).as("key released after the failure").isEqualTo("loaded");
+    }
+
+    @Test
+    void loaderErrorReachesEveryWaiter() throws Exception {
+        // An Error must complete the shared future too, or the waiters block forever
+        LinkageError failure = new LinkageError("class went missing");
+
+        List<Future<Object>> results = runConcurrently(() -> {
+            throw failure;
+        });
+
+        for (Future<Object> result : results) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isSameAs(failure);
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(flight.run("k", () -> "loaded")).as("key released after the failure").isEqualTo("loaded");
+    }
+
+    @Test
+    void failedLoadIsNotRemembered() {
+        assertThatThrownBy(() -> flight.run("k", () -> {
+            throw new IllegalStateException("database down");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> flight.run("k", () -> {
+            throw new LinkageError("class went missing");
+        })).isInstanceOf(LinkageError.class);
+
+        assertThat(flight.run("k", () -> "loaded")).isEqualTo("loaded");
+        assertThat(flight.getCoalesced()).isZero();
+    }
+
+    /**
+     * Starts one leader and {@link #WAITERS} callers for the same key. The
+     * leader's loader only produces its outcome once every other caller is
+     * waiting on it.
+     */
+    private List<Future<Object>> runConcurrently(Supplier<Object> outcome) throws InterruptedException {
+        CountDownLatch loading = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(WAITERS + 1);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            results.add(pool.submit(() -> flight.run("k", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (flight.getCoalesced() < WAITERS && System.nanoTime() < deadline) {
+                    Thread.onSpinWait();
+                }
+                return outcome.get();
+            })));
+            assertThat(loading.await(10, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < WAITERS; i++) {
+                results.add(pool.submit(() -> flight.run("k", () -> loads.incrementAndGet())));
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
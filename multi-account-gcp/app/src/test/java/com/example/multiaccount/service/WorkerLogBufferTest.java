@@ -0,0 +1,117 @@
+package com.example.multiaccount.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorkerLogBufferTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertThat(new WorkerLogBuffer(1).capacity()).isEqualTo(2);
+        assertThat(new WorkerLogBuffer(4).capacity()).isEqualTo(4);
+        assertThat(new WorkerLogBuffer(5).capacity()).isEqualTo(8);
+    }
+
+    @Test
+    void emptyBufferReturnsNothing() {
+        WorkerLogBuffer logs = new WorkerLogBuffer(8);
+
+        assertThat(logs.lastSeq()).isZero();
+        assertThat(logs.since(0, 10)).isEmpty();
+    }
+
+    @Test
+    void sinceReturnsNewerEntriesOldestFirst() {
+        WorkerLogBuffer logs = new WorkerLogBuffer(8);
+        for (long i = 1; i <= 5; i++) {
+            assertThat(logs.add(i, "note " + i)).isEqualTo(i);
+        }
+
+        assertThat(seqs(logs.since(0, 10))).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(seqs(logs.since(3, 10))).containsExactly(4L, 5L);
+        assertThat(logs.since(5, 10)).isEmpty();
+        // A cursor ahead of the buffer (e.g. from before a restart) sees nothing rather than failing
+        assertThat(logs.since(100, 10)).isEmpty();
+    }
+
+    @Test
+    void limitCapsTheOldestFirstPage() {
+        WorkerLogBuffer logs = new WorkerLogBuffer(8);
+        for (long i = 1; i <= 5; i++) {
+            logs.add(i, null);
+        }
+
+        assertThat(seqs(logs.since(0, 2))).containsExactly(1L, 2L);
+        assertThat(seqs(logs.since(2, 2))).containsExactly(3L, 4L);
+    }
+
+    @Test
+    void overwrittenEntriesAreSkipped() {
+        WorkerLogBuffer logs = new WorkerLogBuffer(4);
+        for (long i = 1; i <= 10; i++) {
+            logs.add(i, null);
+        }
+
+        // Only the last lap (7..10) survives, whatever cursor the reader is at
+        assertThat(seqs(logs.since(0, 100))).containsExactly(7L, 8L, 9L, 10L);
+        assertThat(seqs(logs.since(5, 100))).containsExactly(7L, 8L, 9L, 10L);
+        assertThat(seqs(logs.since(8, 100))).containsExactly(9L, 10L);
+    }
+
+    @Test
+    void nullNoteGetsTheDefaultText() {
+        WorkerLogBuffer logs = new WorkerLogBuffer(4);
+        logs.add(42L, null);
+
+        WorkerLogBuffer.Entry entry = logs.since(0, 1).get(0);
+        assertThat(entry.itemId()).isEqualTo(42L);
+        assertThat(entry.note()).isEqualTo("Item processed successfully");
+    }
+
+    @Test
+    void concurrentReaderSeesStrictlyIncreasingSequences() throws Exception {
+        WorkerLogBuffer logs = new WorkerLogBuffer(64);
+        int writers = 4;
+        int perWriter = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int w = 0; w < writers; w++) {
+                pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perWriter; i++) {
+                        logs.add((long) i, null);
+                    }
+                    return null;
+                });
+            }
+            Future<Long> reader = pool.submit(() -> {
+                long cursor = 0;
+                while (cursor < (long) writers * perWriter) {
+                    for (WorkerLogBuffer.Entry entry : logs.since(cursor, 16)) {
+                        assertThat(entry.seq()).isGreaterThan(cursor);
+                        cursor = entry.seq();
+                    }
+                }
+                return cursor;
+            });
+            start.countDown();
+
+            assertThat(reader.get(30, TimeUnit.SECONDS)).isEqualTo((long) writers * perWriter);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<Long> seqs(List<WorkerLogBuffer.Entry> entries) {
+        return entries.stream().map(WorkerLogBuffer.Entry::seq).toList();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.multiaccount.bench;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Zero-latency stand-in for a Redis server behind RedisTemplate, so the
+ * benchmarks measure our side of a cache lookup (templates, serializers,
+ * pipelining, metrics) without network noise. Implements only the commands
+ * ItemCache and ItemNearCache issue; anything else fails loudly.
+ *
+ * With {@code keepWrites} off every SET is dropped, which keeps a
+ * benchmark on the miss path however often it runs.
+ */
+final class InMemoryRedis implements RedisConnectionFactory {
+
+    private static final long TTL_MS = 3_600_000;
+
+    private final ConcurrentMap<ByteBuffer, byte[]> values = new ConcurrentHashMap<>();
+    private final boolean keepWrites;
+
+    InMemoryRedis(boolean keepWrites) {
+        this.keepWrites = keepWrites;
+    }
+
+    void put(byte[] key, byte[] value) {
+        values.put(ByteBuffer.wrap(key), value);
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {RedisConnection.class}, new Connection());
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return false;
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return null;
+    }
+
+    private final class Connection implements InvocationHandler {
+
+        private List<Object> pipeline;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "stringCommands", "keyCommands", "scriptingCommands":
+                    return proxy;
+                case "openPipeline":
+                    pipeline = new ArrayList<>();
+                    return null;
+                case "isPipelined":
+                    return pipeline != null;
+                case "closePipeline":
+                    List<Object> results = pipeline;
+                    pipeline = null;
+                    return results;
+                case "close", "discard":
+                    return null;
+                case "isClosed", "isQueueing":
+                    return false;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "InMemoryRedisConnection";
+                default:
+                    Object result = execute(method.getName(), args);
+                    if (pipeline != null) {
+                        pipeline.add(result);
+                        return null;
+                    }
+                    return result;
+            }
+        }
+
+        private Object execute(String command, Object[] args) {
+            switch (command) {
+                case "get":
+                    return values.get(ByteBuffer.wrap((byte[]) args[0]));
+                case "mGet": {
+                    List<byte[]> found = new ArrayList<>();
+                    for (byte[] key : (byte[][]) args[0]) {
+                        found.add(values.get(ByteBuffer.wrap(key)));
+                    }
+                    return found;
+                }
+                case "set", "setEx", "pSetEx": {
+                    byte[] key = (byte[]) args[0];
+                    byte[] value = (byte[]) (command.equals("set") ? args[1] : args[2]);
+                    boolean ifAbsent = args.length == 4 && args[3] == SetOption.SET_IF_ABSENT;
+                    if (ifAbsent && values.containsKey(ByteBuffer.wrap(key))) {
+                        return false;
+                    }
+                    if (keepWrites || ifAbsent) {
+                        values.put(ByteBuffer.wrap(key), value);
+                    }
+                    return true;
+                }
+                case "pTtl":
+                    return values.containsKey(ByteBuffer.wrap((byte[]) args[0])) ? TTL_MS : -2L;
+                case "del": {
+                    long removed = 0;
+                    for (byte[] key : (byte[][]) args[0]) {
+                        removed += values.remove(ByteBuffer.wrap(key)) != null ? 1 : 0;
+                    }
+                    return removed;
+                }
+                case "evalSha", "eval": {
+                    // The only script is ItemCache's lock release: KEYS[1] follows the script and key count
+                    values.remove(ByteBuffer.wrap(((byte[][]) args[3])[0]));
+                    return 1L;
+                }
+                case "publish":
+                    return 0L;
+                default:
+                    throw new UnsupportedOperationException("InMemoryRedis does not support " + command);
+            }
+        }
+    }
+}
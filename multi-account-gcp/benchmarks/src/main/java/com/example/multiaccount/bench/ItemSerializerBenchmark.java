@@ -0,0 +1,47 @@
+package com.example.multiaccount.bench;
+
+import com.example.multiaccount.config.ItemRedisSerializer;
+import com.example.multiaccount.config.RedisConfig;
+import com.example.multiaccount.model.Item;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis value encoding of an Item with each cache.redis.codec setting. The
+ * encoded size is printed once per trial, since JMH only reports time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemSerializerBenchmark {
+
+    @Param({"binary", "json"})
+    public String codec;
+
+    private ItemRedisSerializer serializer;
+    private Item item;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        serializer = new RedisConfig().redisValueSerializer(new SimpleMeterRegistry(), codec);
+        item = ItemServiceGetBenchmark.item();
+        encoded = serializer.serialize(item);
+        System.out.println("encoded size (" + codec + "): " + encoded.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(item);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(encoded);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.multiaccount.bench;
+
+import com.example.multiaccount.config.RedisConfig;
+import com.example.multiaccount.model.Item;
+import com.example.multiaccount.repo.ItemRepository;
+import com.example.multiaccount.service.ItemCache;
+import com.example.multiaccount.service.ItemNearCache;
+import com.example.multiaccount.service.ItemService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ItemService.get on each tier of the read path: near cache hit, Redis hit
+ * (near cache off) and a full miss that loads from the repository, takes and
+ * releases the load lock and writes Redis. Redis is {@link InMemoryRedis} and
+ * the repository a proxy that returns a fixed item, so the numbers are our
+ * own overhead per lookup, not network or database time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemServiceGetBenchmark {
+
+    private static final long ID = 42L;
+
+    @Param({"binary", "json"})
+    public String codec;
+
+    private ItemCache nearCache;
+    private ItemCache redisCache;
+    private ItemCache missCache;
+    private ItemService nearService;
+    private ItemService redisService;
+    private ItemService missService;
+
+    @Setup
+    public void setUp() {
+        Item item = item();
+        ItemRepository repo = repository(item);
+
+        nearCache = cache(new InMemoryRedis(true), true);
+        nearService = new ItemService(repo, nearCache, null, new SimpleMeterRegistry());
+        nearService.get(ID);
+
+        redisCache = cache(new InMemoryRedis(true), false);
+        redisService = new ItemService(repo, redisCache, null, new SimpleMeterRegistry());
+        redisCache.put(item);
+
+        missCache = cache(new InMemoryRedis(false), false);
+        missService = new ItemService(repo, missCache, null, new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        nearCache.shutdown();
+        redisCache.shutdown();
+        missCache.shutdown();
+    }
+
+    @Benchmark
+    public Optional<Item> nearCacheHit() {
+        return nearService.get(ID);
+    }
+
+    @Benchmark
+    public Optional<Item> redisHit() {
+        return redisService.get(ID);
+    }
+
+    @Benchmark
+    public Optional<Item> miss() {
+        return missService.get(ID);
+    }
+
+    private ItemCache cache(InMemoryRedis redis, boolean nearEnabled) {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        RedisConfig config = new RedisConfig();
+        RedisTemplate<String, Object> template = config.redisTemplate(redis, config.redisValueSerializer(registry, codec));
+        RedisMessageListenerContainer listeners = new RedisMessageListenerContainer();
+        ItemNearCache near = new ItemNearCache(template, listeners, registry, nearEnabled, 10_000, 30);
+        return new ItemCache(template, near, registry, 3600, 0.1, 1.0, 2000, 200);
+    }
+
+    static Item item() {
+        Item item = new Item();
+        item.setId(ID);
+        item.setName("Wireless keyboard");
+        item.setDescription("Compact 75% layout, hot-swappable switches, USB-C");
+        item.setCreatedAt(Instant.parse("2024-03-05T10:15:30.123456Z"));
+        return item;
+    }
+
+    // Only findById is called on the read path
+    private static ItemRepository repository(Item item) {
+        return (ItemRepository) Proxy.newProxyInstance(ItemRepository.class.getClassLoader(),
+                new Class<?>[] {ItemRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findById")) {
+                        return Optional.of(item);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
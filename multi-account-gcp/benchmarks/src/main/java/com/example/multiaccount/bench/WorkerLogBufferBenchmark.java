@@ -0,0 +1,64 @@
+package com.example.multiaccount.bench;
+
+import com.example.multiaccount.service.WorkerLogBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WorkerLogBuffer under contention: appends from 1, 4 and 8 threads (the
+ * publisher confirm callbacks), and appends racing a reader that polls
+ * since() the way the SSE stream and /v1/worker/logs do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WorkerLogBufferBenchmark {
+
+    private final WorkerLogBuffer buffer = new WorkerLogBuffer(1024);
+
+    @State(Scope.Thread)
+    public static class Reader {
+        long lastSeq;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long add1Thread() {
+        return buffer.add(42L, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long add4Threads() {
+        return buffer.add(42L, null);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long add8Threads() {
+        return buffer.add(42L, null);
+    }
+
+    @Benchmark
+    @Group("addWhileReading")
+    @GroupThreads(4)
+    public long writer() {
+        return buffer.add(42L, null);
+    }
+
+    @Benchmark
+    @Group("addWhileReading")
+    @GroupThreads(1)
+    public List<WorkerLogBuffer.Entry> reader(Reader reader) {
+        List<WorkerLogBuffer.Entry> entries = buffer.since(reader.lastSeq, 200);
+        if (!entries.isEmpty()) {
+            reader.lastSeq = entries.get(entries.size() - 1).seq();
+        }
+        return entries;
+    }
+}
@@ -67,8 +67,8 @@ export default function App() {
 
   const fetchAll = async () => {
     try {
-      setSqlData((await axios.get(`${API}/v1/data/sql`)).data);
-      setRedisData((await axios.get(`${API}/v1/data/redis`)).data);
+      setSqlData((await axios.get(`${API}/v1/data/sql`)).data.items);
+      setRedisData((await axios.get(`${API}/v1/data/redis`)).data.entries);
       setBucketData((await axios.get(`${API}/v1/data/bucket`)).data);
       setServiceStatus((await axios.get(`${API}/v1/status/services`)).data);
       setCacheStats((await axios.get(`${API}/v1/status/cache`)).data);
@@ -78,6 +78,16 @@ export default function App() {
     }
   };
 
+  // Worker logs are pushed over SSE; EventSource reconnects and resumes from the last id on its own
+  useEffect(() => {
+    const source = new EventSource(`${API}/v1/worker/logs/stream`);
+    source.addEventListener("log", (e) => {
+      const entry = JSON.parse(e.data);
+      setWorkerLogs((logs) => [entry, ...logs].slice(0, 50));
+    });
+    return () => source.close();
+  }, []);
+
   useEffect(() => {
     fetchAll();
     const t = setInterval(fetchAll, 3000);
@@ -115,6 +125,23 @@ export default function App() {
         </div>
       </section>
 
+      {/* WORKER LOGS */}
+      <section style={{ padding: 20, background: "white", borderRadius: 8, marginBottom: 20 }}>
+        <h2>🛠️ Worker Logs</h2>
+
+        {workerLogs.length === 0 ? (
+          <div>No worker activity yet</div>
+        ) : (
+          <ul style={{ maxHeight: 300, overflowY: "auto" }}>
+            {workerLogs.map((entry) => (
+              <li key={entry.id}>
+                #{entry.id} [{entry.processed_at}] item {entry.item_id}: {entry.note}
+              </li>
+            ))}
+          </ul>
+        )}
+      </section>
+
       <div style={{ marginTop: 30, textAlign: "center" }}>
         Connected to backend: <strong>{API}</strong>
       </div>
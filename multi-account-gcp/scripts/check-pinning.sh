@@ -0,0 +1,70 @@
+#!/bin/bash
+
+###############################################################################
+# Virtual thread pinning check
+#
+# A virtual thread that blocks inside a synchronized block or method (JDBC,
+# Redis, a publisher confirm, file I/O) pins its carrier thread, and with
+# enough of them the virtual thread mode stalls on a handful of carriers.
+#
+# 1. Static: lists every synchronized in the app and worker sources. Each one
+#    must either be replaced with a java.util.concurrent lock or be listed in
+#    ALLOWED below with the reason it never blocks while held.
+# 2. Runtime (optional): summarises jdk.VirtualThreadPinned events from a JFR
+#    recording, which also catches pinning inside libraries. Record one with
+#      JAVA_TOOL_OPTIONS="-XX:StartFlightRecording=filename=/tmp/pinning.jfr,settings=profile" \
+#        VIRTUAL_THREADS=true docker compose up -d backend worker
+#    put the services under load, then
+#      docker compose stop backend && docker cp demo_backend:/tmp/pinning.jfr .
+#
+# Usage: scripts/check-pinning.sh [recording.jfr ...]
+# Exits non-zero on an unreviewed synchronized or any pinned event.
+###############################################################################
+
+set -e
+
+cd "$(dirname "$0")/.."
+
+# file:reason, for monitors that only guard short in-memory work
+ALLOWED=(
+    "worker/src/main/java/com/example/multiaccount/worker/RecentEventIds.java:array probes only, no I/O while held"
+)
+
+status=0
+
+echo "== synchronized in app/ and worker/ sources"
+while IFS= read -r hit; do
+    file="${hit%%:*}"
+    reviewed=""
+    for entry in "${ALLOWED[@]}"; do
+        if [ "${entry%%:*}" = "$file" ]; then
+            reviewed="${entry#*:}"
+        fi
+    done
+    if [ -n "$reviewed" ]; then
+        echo "  ok     $hit  ($reviewed)"
+    else
+        echo "  REVIEW $hit"
+        status=1
+    fi
+done < <(grep -rn --include='*.java' -E '\bsynchronized\b' app/src/main/java worker/src/main/java \
+    | grep -vE '^[^:]+:[0-9]+:[[:space:]]*(//|\*|/\*)' || true)
+
+for recording in "$@"; do
+    echo ""
+    echo "== jdk.VirtualThreadPinned in $recording"
+    events=$(jfr print --events jdk.VirtualThreadPinned --stack-depth 20 "$recording")
+    count=$(grep -c 'jdk.VirtualThreadPinned' <<< "$events" || true)
+    if [ "$count" -eq 0 ]; then
+        echo "  no pinned virtual threads recorded"
+        continue
+    fi
+    status=1
+    echo "  $count pinned events; innermost application frames:"
+    # First com.example frame of each event's stack, most frequent first
+    awk '/jdk.VirtualThreadPinned/ { inEvent = 1; next }
+         inEvent && /com\.example\./ { sub(/^[ \t]+/, ""); print; inEvent = 0 }' <<< "$events" \
+        | sort | uniq -c | sort -rn | head -20
+done
+
+exit $status
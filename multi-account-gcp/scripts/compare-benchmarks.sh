@@ -0,0 +1,92 @@
+#!/bin/bash
+
+###############################################################################
+# Compare two JMH result files
+#
+# Matches benchmarks by name and parameters and prints both scores and the
+# change. A change is only called a regression or an improvement when it
+# exceeds THRESHOLD percent and the two 99.9% confidence intervals do not
+# overlap; "higher is better" follows each benchmark's mode (throughput vs
+# time per op). Exits 1 when anything regressed, so it can gate a release.
+#
+# Needs jq.
+#
+# Usage: scripts/compare-benchmarks.sh <baseline.json> <candidate.json>
+#   THRESHOLD=5
+###############################################################################
+
+set -e
+
+if [ $# -ne 2 ]; then
+    echo "Usage: $0 <baseline.json> <candidate.json>" >&2
+    exit 2
+fi
+
+if ! command -v jq > /dev/null; then
+    echo "jq is required" >&2
+    exit 2
+fi
+
+THRESHOLD=${THRESHOLD:-5}
+
+# One line per result: "<name> <mode> <score> <low> <high> <unit>"; NaN bounds (single fork) become the score
+flatten() {
+    jq -r '.[] | [
+            ((.benchmark | sub("^com\\.example\\.multiaccount\\.bench\\."; ""))
+                + ((.params // {}) | to_entries | map("[" + .key + "=" + .value + "]") | join(""))),
+            .mode,
+            .primaryMetric.score,
+            (.primaryMetric.scoreConfidence[0] | if type == "number" then . else null end),
+            (.primaryMetric.scoreConfidence[1] | if type == "number" then . else null end),
+            (.primaryMetric.scoreUnit | gsub(" "; ""))
+        ] | map(. // "-") | join(" ")' "$1"
+}
+
+declare -A base
+while read -r name mode score low high unit; do
+    base[$name]="$score $low $high $unit"
+done < <(flatten "$1")
+
+regressions=0
+printf "%-62s %14s %14s %9s  %s\n" "Benchmark" "baseline" "candidate" "change" ""
+while read -r name mode score low high unit; do
+    if [ -z "${base[$name]}" ]; then
+        printf "%-62s %14s %14.3f %9s  %s\n" "$name" "-" "$score" "" "new ($unit)"
+        continue
+    fi
+    read -r bscore blow bhigh bunit <<< "${base[$name]}"
+    unset "base[$name]"
+    if [ "$bunit" != "$unit" ]; then
+        printf "%-62s %14s %14s %9s  %s\n" "$name" "$bscore $bunit" "$score $unit" "" "units differ"
+        continue
+    fi
+    verdict=$(awk -v b="$bscore" -v bl="$blow" -v bh="$bhigh" -v c="$score" -v cl="$low" -v ch="$high" \
+            -v mode="$mode" -v t="$THRESHOLD" 'BEGIN {
+        if (bl == "-") { bl = b; bh = b }
+        if (cl == "-") { cl = c; ch = c }
+        change = b == 0 ? 0 : (c - b) / b * 100
+        better = mode == "thrpt" ? change > 0 : change < 0
+        overlap = cl <= bh && bl <= ch
+        label = ""
+        if ((change >= t || change <= -t) && !overlap) {
+            label = better ? "improved" : "REGRESSED"
+        }
+        printf "%+.1f%% %s", change, label
+    }')
+    read -r change label <<< "$verdict"
+    printf "%-62s %14.3f %14.3f %9s  %s\n" "$name" "$bscore" "$score" "$change" "$label ($unit)"
+    if [ "$label" = "REGRESSED" ]; then
+        regressions=$((regressions + 1))
+    fi
+done < <(flatten "$2")
+
+for name in "${!base[@]}"; do
+    printf "%-62s %14s %14s %9s  %s\n" "$name" "${base[$name]%% *}" "-" "" "removed"
+done
+
+echo ""
+if [ "$regressions" -gt 0 ]; then
+    echo "$regressions benchmark(s) regressed by more than $THRESHOLD%."
+    exit 1
+fi
+echo "No regressions beyond $THRESHOLD%."
@@ -0,0 +1,97 @@
+#!/bin/bash
+
+###############################################################################
+# Startup time: default vs fast-startup images
+#
+# Builds both image variants of the backend and the worker (the fast-startup
+# target is AOT-processed and ships an AppCDS archive, see the Dockerfiles),
+# then restarts each service RUNS times per variant and reports the median
+#   - time to first request: from `docker compose up` until the first 200 from
+#     GET /v1/items/info (backend) or GET /actuator/health (worker), which is
+#     what an autoscaler or a rolling deploy waits for
+#   - JVM startup: the "Started ... in N seconds" Spring Boot logs
+# Postgres, Redis, RabbitMQ and MinIO are started once and left running.
+#
+# Usage: scripts/compare-startup.sh
+#   RUNS=5 BACKEND_URL=http://localhost:8080 WORKER_URL=http://localhost:8082
+###############################################################################
+
+set -e
+
+cd "$(dirname "$0")/.."
+
+RUNS=${RUNS:-5}
+BACKEND_URL=${BACKEND_URL:-http://localhost:8080}
+WORKER_URL=${WORKER_URL:-http://localhost:8082}
+
+echo "== Building images"
+docker build -q -t backend-app:startup-default app > /dev/null
+docker build -q --target fast-startup -t backend-app:startup-fast app > /dev/null
+docker build -q -t worker-app:startup-default worker > /dev/null
+docker build -q --target fast-startup -t worker-app:startup-fast worker > /dev/null
+
+docker compose up -d postgres redis rabbitmq minio > /dev/null
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print (NR % 2) ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2 }'
+}
+
+# Prints "<ms to first 200> <seconds reported by Spring Boot>" for one cold start
+measure() {
+    local service=$1 image_var=$2 image=$3 url=$4
+    docker compose rm -sf "$service" > /dev/null 2>&1
+    local start
+    start=$(now_ms)
+    env "$image_var=$image" docker compose up -d --no-deps "$service" > /dev/null 2>&1
+    for _ in $(seq 1 1200); do
+        if curl -fs -o /dev/null --max-time 1 "$url"; then
+            local ready
+            ready=$(now_ms)
+            local jvm
+            jvm=$(docker compose logs "$service" 2>/dev/null | sed -nE 's/.*Started .* in ([0-9.]+) seconds.*/\1/p' | tail -1)
+            echo "$((ready - start)) ${jvm:-?}"
+            return 0
+        fi
+        sleep 0.05
+    done
+    echo "$service did not answer $url within 60s" >&2
+    exit 1
+}
+
+declare -A results
+
+for variant in default fast; do
+    for module in backend worker; do
+        case $module in
+            backend) service=backend; image_var=BACKEND_IMAGE; url="$BACKEND_URL/v1/items/info" ;;
+            worker) service=worker; image_var=WORKER_IMAGE; url="$WORKER_URL/actuator/health" ;;
+        esac
+        echo "== $module ($variant), $RUNS runs"
+        firsts=()
+        jvms=()
+        for _ in $(seq 1 "$RUNS"); do
+            read -r first jvm <<< "$(measure "$service" "$image_var" "$module-app:startup-$variant" "$url")"
+            [ -n "$first" ] || exit 1
+            firsts+=("$first")
+            jvms+=("$jvm")
+        done
+        results[$module,$variant]="$(printf "%s\n" "${firsts[@]}" | median) $(printf "%s\n" "${jvms[@]}" | median)"
+    done
+done
+
+# Leave the services on their regular images
+docker compose up -d --force-recreate --no-deps backend worker > /dev/null 2>&1 || true
+
+echo ""
+printf "%-10s %22s %16s %22s %16s\n" "" "default first req (ms)" "JVM started (s)" "fast first req (ms)" "JVM started (s)"
+for module in backend worker; do
+    read -r dfirst djvm <<< "${results[$module,default]}"
+    read -r ffirst fjvm <<< "${results[$module,fast]}"
+    printf "%-10s %22s %16s %22s %16s\n" "$module" "$dfirst" "$djvm" "$ffirst" "$fjvm"
+done
+echo ""
+echo "Medians of $RUNS cold starts each, measured from 'docker compose up'."
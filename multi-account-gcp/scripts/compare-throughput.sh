@@ -0,0 +1,79 @@
+#!/bin/bash
+
+###############################################################################
+# Platform vs virtual thread throughput
+#
+# Restarts backend and worker with VIRTUAL_THREADS=false, then true, and runs
+# the same load against each: cached item reads (ItemService.get, Redis) and
+# item creates (Postgres insert plus the outbox event the worker consumes).
+# The concurrency defaults to twice Tomcat's 200 request threads so that the
+# platform thread pool, not the backend, is what queues requests.
+#
+# Needs hey (https://github.com/rakyll/hey) and the compose stack running.
+#
+# Usage: scripts/compare-throughput.sh
+#   BASE_URL=http://localhost:8080 CONCURRENCY=400 DURATION=30s
+###############################################################################
+
+set -e
+
+cd "$(dirname "$0")/.."
+
+BASE_URL=${BASE_URL:-http://localhost:8080}
+CONCURRENCY=${CONCURRENCY:-400}
+DURATION=${DURATION:-30s}
+
+if ! command -v hey > /dev/null; then
+    echo "hey is required: go install github.com/rakyll/hey@latest" >&2
+    exit 1
+fi
+
+wait_for_backend() {
+    for _ in $(seq 1 60); do
+        if curl -fs "$BASE_URL/actuator/health" | grep -q '"UP"'; then
+            return 0
+        fi
+        sleep 2
+    done
+    echo "Backend did not come up at $BASE_URL" >&2
+    exit 1
+}
+
+# Prints "<requests/sec> <p99 seconds>" for one hey run
+measure() {
+    local out
+    out=$(hey -z "$DURATION" -c "$CONCURRENCY" "$@")
+    echo "$(awk '/Requests\/sec/ { print $2 }' <<< "$out") $(awk '/99% in/ { print $3 }' <<< "$out")"
+}
+
+declare -A results
+
+for mode in false true; do
+    echo "== VIRTUAL_THREADS=$mode"
+    VIRTUAL_THREADS=$mode docker compose up -d --force-recreate backend worker > /dev/null
+    wait_for_backend
+
+    id=$(curl -fs -X POST "$BASE_URL/v1/items" -H "Content-Type: application/json" \
+        -d '{"name":"load test","description":"compare-throughput"}' | sed -E 's/.*"id":([0-9]+).*/\1/')
+    # Warm up the JIT, connection pools and the cache entry
+    hey -z 5s -c 50 "$BASE_URL/v1/items/$id" > /dev/null
+
+    results[$mode,get]=$(measure "$BASE_URL/v1/items/$id")
+    results[$mode,create]=$(measure -m POST -H "Content-Type: application/json" \
+        -d '{"name":"load test","description":"compare-throughput"}' "$BASE_URL/v1/items")
+done
+
+echo ""
+printf "%-26s %14s %12s %14s %12s\n" "" "platform rps" "p99 (s)" "virtual rps" "p99 (s)"
+for endpoint in get create; do
+    read -r prps pp99 <<< "${results[false,$endpoint]}"
+    read -r vrps vp99 <<< "${results[true,$endpoint]}"
+    case $endpoint in
+        get) label="GET /v1/items/{id}" ;;
+        create) label="POST /v1/items" ;;
+    esac
+    printf "%-26s %14s %12s %14s %12s\n" "$label" "$prps" "$pp99" "$vrps" "$vp99"
+done
+echo ""
+echo "Concurrency $CONCURRENCY for $DURATION per run."
+echo "Run scripts/check-pinning.sh on a recording from the virtual thread run before trusting its numbers."
@@ -0,0 +1,39 @@
+#!/bin/bash
+
+###############################################################################
+# JMH microbenchmarks
+#
+# Builds benchmarks/target/benchmarks.jar (the backend sources plus the
+# benchmark classes) and runs it, writing JMH's JSON results to
+# benchmarks/results/jmh-<tag>.json. The tag defaults to the current commit;
+# compare two result files with scripts/compare-benchmarks.sh.
+#
+# Anything after the tag is passed to JMH, e.g. a benchmark regex or -p to
+# narrow parameters. Run on an otherwise idle machine.
+#
+# Usage: scripts/run-benchmarks.sh [tag] [jmh options...]
+#   scripts/run-benchmarks.sh v1.4 ItemServiceGet -p codec=binary
+#   QUICK=true scripts/run-benchmarks.sh    (1 fork, short iterations, for smoke runs only)
+###############################################################################
+
+set -e
+
+cd "$(dirname "$0")/.."
+
+TAG=${1:-$(git rev-parse --short HEAD)}
+shift || true
+
+mvn -B -q -f benchmarks/pom.xml package
+
+mkdir -p benchmarks/results
+OUT="benchmarks/results/jmh-$TAG.json"
+
+opts=()
+if [ "$QUICK" = "true" ]; then
+    opts=(-f 1 -wi 1 -w 1s -i 2 -r 1s)
+fi
+
+java -jar benchmarks/target/benchmarks.jar "${opts[@]}" -rf json -rff "$OUT" "$@"
+
+echo ""
+echo "Results written to $OUT"
@@ -4,22 +4,35 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import java.time.Instant;
+import java.util.UUID;
 
 @Entity
 public class Derived {
+    // Pooled sequence ids let Hibernate batch inserts; allocationSize must match the sequence increment (V1)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "derived_seq")
+    @SequenceGenerator(name = "derived_seq", sequenceName = "derived_id_seq", allocationSize = 50)
     private Long id;
+    private UUID eventId;
+    private String traceId;
     private Long itemId;
     private Instant processedAt;
+    private Long lagMs;
     private String note;
 
     public Long getId() { return id; }
+    public UUID getEventId() { return eventId; }
+    public void setEventId(UUID eventId) { this.eventId = eventId; }
+    public String getTraceId() { return traceId; }
+    public void setTraceId(String traceId) { this.traceId = traceId; }
     public Long getItemId() { return itemId; }
     public void setItemId(Long itemId) { this.itemId = itemId; }
     public Instant getProcessedAt() { return processedAt; }
     public void setProcessedAt(Instant processedAt) { this.processedAt = processedAt; }
+    public Long getLagMs() { return lagMs; }
+    public void setLagMs(Long lagMs) { this.lagMs = lagMs; }
     public String getNote() { return note; }
     public void setNote(String note) { this.note = note; }
 }
@@ -0,0 +1,41 @@
+package com.example.multiaccount.worker;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Batched inserts into derived that silently skip events already recorded.
+ * Rows without an event id are always inserted.
+ */
+@Component
+public class DerivedWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO derived (id, event_id, trace_id, item_id, processed_at, lag_ms, note) "
+                    + "VALUES (nextval('derived_id_seq'), ?, ?, ?, ?, ?, ?) "
+                    + "ON CONFLICT (event_id) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DerivedWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertAll(List<Derived> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, d) -> {
+            ps.setObject(1, d.getEventId(), Types.OTHER);
+            ps.setString(2, d.getTraceId());
+            ps.setLong(3, d.getItemId());
+            ps.setTimestamp(4, Timestamp.from(d.getProcessedAt()));
+            ps.setObject(5, d.getLagMs(), Types.BIGINT);
+            ps.setString(6, d.getNote());
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.multiaccount.worker;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * GET /actuator/eventlag: count, mean, max and percentiles of queue wait,
+ * processing time and end-to-end lag since the worker started. The full
+ * histograms are in /actuator/prometheus.
+ */
+@Component
+@Endpoint(id = "eventlag")
+public class EventLagEndpoint {
+
+    private final EventLagMetrics metrics;
+
+    public EventLagEndpoint(EventLagMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> eventLag() {
+        return metrics.summary();
+    }
+}
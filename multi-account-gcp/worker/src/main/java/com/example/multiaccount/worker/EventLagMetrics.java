@@ -0,0 +1,112 @@
+package com.example.multiaccount.worker;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers for each stage an item event goes through on its way into derived:
+ * worker.event.queue.wait from the backend publishing it to a consumer
+ * receiving it, worker.event.processing from receipt of a delivery to the
+ * commit of its rows (one sample per delivery, whose size goes to the
+ * worker.event.batch.size summary), and worker.event.lag from its creation
+ * in the backend (the item's commit when it went through the outbox) to the
+ * row being written, which is the value stored in derived.lag_ms.
+ *
+ * Queue wait and lag compare the backend's clock with ours, so they are only
+ * as accurate as the hosts' clock sync; negative differences count as zero.
+ */
+@Component
+public class EventLagMetrics {
+
+    static final String TRACE_ID_HEADER = "x-trace-id";
+    static final String CREATED_AT_HEADER = "x-created-at";
+    static final String PUBLISHED_AT_HEADER = "x-published-at";
+
+    private final Timer queueWait;
+    private final Timer processing;
+    private final DistributionSummary batchSize;
+    private final Timer lag;
+
+    public EventLagMetrics(MeterRegistry meterRegistry) {
+        this.queueWait = Timer.builder("worker.event.queue.wait")
+                .description("Time from publish to delivery to a consumer")
+                .register(meterRegistry);
+        this.processing = Timer.builder("worker.event.processing")
+                .description("Time from delivery of a batch to its derived rows being committed")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("worker.event.batch.size")
+                .description("Events written per delivered batch")
+                .baseUnit("events")
+                .register(meterRegistry);
+        this.lag = Timer.builder("worker.event.lag")
+                .description("Time from event creation in the backend to the derived row")
+                .register(meterRegistry);
+    }
+
+    public void recordQueueWait(Long publishedAtMillis, long receivedAtMillis) {
+        if (publishedAtMillis != null) {
+            queueWait.record(Math.max(0, receivedAtMillis - publishedAtMillis), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // One sample per batch: recording it per event would weight the percentiles by batch size
+    public void recordProcessing(int events, long startNanos) {
+        processing.record(Duration.ofNanos(System.nanoTime() - startNanos));
+        batchSize.record(events);
+    }
+
+    public void recordLag(Long lagMillis) {
+        if (lagMillis != null) {
+            lag.record(lagMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Milliseconds from creation to {@code processedAtMillis}, or null for events without the header. */
+    static Long lagMillis(Long createdAtMillis, long processedAtMillis) {
+        return createdAtMillis != null ? Math.max(0, processedAtMillis - createdAtMillis) : null;
+    }
+
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("queueWait", stats(queueWait));
+        summary.put("processing", stats(processing));
+        summary.put("batchSize", batchStats());
+        summary.put("endToEnd", stats(lag));
+        return summary;
+    }
+
+    private static Map<String, Object> stats(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", snapshot.count());
+        stats.put("meanMs", round(snapshot.mean(TimeUnit.MILLISECONDS)));
+        stats.put("maxMs", round(snapshot.max(TimeUnit.MILLISECONDS)));
+        // Percentiles come from management.metrics.distribution.percentiles.worker.event and decay over time
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            stats.put("p" + Math.round(percentile.percentile() * 100) + "Ms", round(percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        return stats;
+    }
+
+    private Map<String, Object> batchStats() {
+        HistogramSnapshot snapshot = batchSize.takeSnapshot();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", snapshot.count());
+        stats.put("mean", round(snapshot.mean()));
+        stats.put("max", round(snapshot.max()));
+        return stats;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -1,25 +1,123 @@
 package com.example.multiaccount.worker;
 
-import jakarta.persistence.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 
+/**
+ * Records item events in derived. Each row keeps the event's trace id and its
+ * end-to-end lag, and {@link EventLagMetrics} times every stage.
+ */
 @Component
 public class EventListener {
-    private final DerivedRepo repo;
+    private static final Logger log = LoggerFactory.getLogger(EventListener.class);
 
-    public EventListener(DerivedRepo repo) { this.repo = repo; }
+    private final DerivedWriter writer;
+    private final RecentEventIds recentEventIds;
+    private final EventLagMetrics metrics;
 
-    @RabbitListener(queues = "queue")
+    public EventListener(DerivedWriter writer, RecentEventIds recentEventIds, EventLagMetrics metrics) {
+        this.writer = writer;
+        this.recentEventIds = recentEventIds;
+        this.metrics = metrics;
+    }
+
+    @RabbitListener(queues = "queue", autoStartup = "#{!${worker.listener.batch.enabled:true}}")
     @Transactional
-    public void handle(Long itemId) {
+    public void handle(Message<Long> message) {
+        long start = System.nanoTime();
+        Instant now = Instant.now();
+        MessageHeaders headers = message.getHeaders();
+        metrics.recordQueueWait(longHeader(headers, EventLagMetrics.PUBLISHED_AT_HEADER), now.toEpochMilli());
+        UUID eventId = eventId(headers.get(AmqpHeaders.MESSAGE_ID, String.class));
+        if (eventId != null && recentEventIds.contains(eventId)) {
+            log.debug("Skipping duplicate event {} for item {}", eventId, message.getPayload());
+            return;
+        }
+        List<Derived> rows = List.of(derived(eventId, message, now));
+        writer.insertAll(rows);
+        afterCommit(eventId == null ? List.of() : List.of(eventId), rows, start);
+    }
+
+    // Batch mode: one transaction and one batched insert per delivery batch
+    @RabbitListener(queues = "queue", containerFactory = "batchContainerFactory",
+            autoStartup = "${worker.listener.batch.enabled:true}")
+    @Transactional
+    public void handleBatch(List<Message<Long>> messages) {
+        long start = System.nanoTime();
+        Instant now = Instant.now();
+        List<Derived> rows = new ArrayList<>(messages.size());
+        Set<UUID> seen = new HashSet<>();
+        for (Message<Long> message : messages) {
+            MessageHeaders headers = message.getHeaders();
+            // Includes the time the message sat in the consumer while the batch filled up
+            metrics.recordQueueWait(longHeader(headers, EventLagMetrics.PUBLISHED_AT_HEADER), now.toEpochMilli());
+            UUID eventId = eventId(headers.get(AmqpHeaders.MESSAGE_ID, String.class));
+            if (eventId != null && (recentEventIds.contains(eventId) || !seen.add(eventId))) {
+                continue;
+            }
+            rows.add(derived(eventId, message, now));
+        }
+        if (rows.size() < messages.size()) {
+            log.debug("Skipped {} duplicate events in a batch of {}", messages.size() - rows.size(), messages.size());
+        }
+        writer.insertAll(rows);
+        afterCommit(seen, rows, start);
+    }
+
+    // Only remember ids once the rows are durable, otherwise a rollback would turn the redelivery into a skip.
+    // Timings are recorded then too, so retried deliveries are not counted twice.
+    private void afterCommit(Iterable<UUID> eventIds, List<Derived> rows, long start) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eventIds.forEach(recentEventIds::add);
+                metrics.recordProcessing(rows.size(), start);
+                rows.forEach(row -> metrics.recordLag(row.getLagMs()));
+            }
+        });
+    }
+
+    // Events from publishers that predate event ids carry no (or a non-UUID) message id and are not deduplicated
+    private static UUID eventId(String messageId) {
+        if (messageId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(messageId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Events from publishers that predate the trace headers get no trace id and no lag
+    private static Derived derived(UUID eventId, Message<Long> message, Instant processedAt) {
+        MessageHeaders headers = message.getHeaders();
         Derived d = new Derived();
-        d.setItemId(itemId);
-        d.setProcessedAt(Instant.now());
+        d.setEventId(eventId);
+        d.setTraceId(headers.get(EventLagMetrics.TRACE_ID_HEADER, String.class));
+        d.setItemId(message.getPayload());
+        d.setProcessedAt(processedAt);
+        d.setLagMs(EventLagMetrics.lagMillis(longHeader(headers, EventLagMetrics.CREATED_AT_HEADER), processedAt.toEpochMilli()));
         d.setNote("processed");
-        repo.save(d);
+        return d;
+    }
+
+    private static Long longHeader(MessageHeaders headers, String name) {
+        return headers.get(name) instanceof Number value ? value.longValue() : null;
     }
 }
@@ -0,0 +1,91 @@
+package com.example.multiaccount.worker;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Remembers the ids of recently processed events so that redeliveries can be
+ * dropped without asking Postgres.
+ *
+ * Ids are kept as 64-bit fingerprints in two primitive open-addressing tables:
+ * new ids go into the current generation, and once it holds {@code capacity}
+ * ids it becomes the previous generation and the old previous one is dropped.
+ * Lookups check both, so at least the last {@code capacity} ids are always
+ * remembered, at a few dozen bytes per id. Anything older falls through to the unique
+ * constraint on derived.event_id.
+ */
+@Component
+public class RecentEventIds {
+
+    private final int capacity;
+    private long[] current;
+    private long[] previous;
+    private int currentSize;
+
+    public RecentEventIds(@Value("${worker.dedupe.recent-capacity:100000}") int capacity) {
+        this.capacity = Math.max(capacity, 16);
+        this.current = newTable(this.capacity);
+        this.previous = newTable(this.capacity);
+    }
+
+    public synchronized boolean contains(UUID eventId) {
+        long fp = fingerprint(eventId);
+        return contains(current, fp) || contains(previous, fp);
+    }
+
+    public synchronized void add(UUID eventId) {
+        long fp = fingerprint(eventId);
+        if (contains(current, fp) || contains(previous, fp)) {
+            return;
+        }
+        if (currentSize >= capacity) {
+            previous = current;
+            current = newTable(capacity);
+            currentSize = 0;
+        }
+        insert(current, fp);
+        currentSize++;
+    }
+
+    // Load factor stays at or below 0.5, so probe chains are short and a free slot always exists
+    private static long[] newTable(int capacity) {
+        return new long[Integer.highestOneBit(capacity - 1) << 2];
+    }
+
+    private static boolean contains(long[] table, long fp) {
+        int mask = table.length - 1;
+        for (int i = slot(fp, mask); ; i = (i + 1) & mask) {
+            long v = table[i];
+            if (v == fp) {
+                return true;
+            }
+            if (v == 0) {
+                return false;
+            }
+        }
+    }
+
+    private static void insert(long[] table, long fp) {
+        int mask = table.length - 1;
+        int i = slot(fp, mask);
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = fp;
+    }
+
+    private static int slot(long fp, int mask) {
+        return (int) (fp ^ (fp >>> 32)) & mask;
+    }
+
+    // 0 marks an empty slot, so it is folded onto 1
+    static long fingerprint(UUID id) {
+        long h = id.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ id.getLeastSignificantBits();
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
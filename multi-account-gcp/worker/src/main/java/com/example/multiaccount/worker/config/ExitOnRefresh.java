@@ -0,0 +1,53 @@
+package com.example.multiaccount.worker.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.SpringProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stand-in for Spring Framework 6.1's -Dspring.context.exit=onRefresh, which
+ * this Boot version predates. It is there for the AppCDS training run of the
+ * fast-startup image: once every singleton exists, and before any other
+ * lifecycle bean starts (the Rabbit listener containers, Tomcat),
+ * the JVM halts, so -XX:ArchiveClassesAtExit records everything startup
+ * loads without the run serving requests or connecting out.
+ *
+ * Drop it when moving to Boot 3.2, where the framework handles the property.
+ */
+@Component
+public class ExitOnRefresh implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ExitOnRefresh.class);
+
+    private volatile boolean running;
+
+    static boolean requested() {
+        return "onRefresh".equals(SpringProperties.getProperty("spring.context.exit"));
+    }
+
+    @Override
+    public void start() {
+        if (requested()) {
+            log.info("spring.context.exit=onRefresh: context refreshed, halting");
+            Runtime.getRuntime().halt(0);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+}
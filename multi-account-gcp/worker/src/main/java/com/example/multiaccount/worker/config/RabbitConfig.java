@@ -0,0 +1,35 @@
+package com.example.multiaccount.worker.config;
+
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RabbitConfig {
+
+    /**
+     * Listener factory that hands the listener up to batch-size messages at once,
+     * or whatever arrived before the receive timeout. Prefetch and consumer
+     * concurrency come from the spring.rabbitmq.listener.simple.* properties.
+     * The whole batch is acked together once the listener returns.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${worker.listener.batch.size:500}") int batchSize,
+            @Value("${worker.listener.batch.receive-timeout-ms:100}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        return factory;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.multiaccount.worker.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Opt-in virtual threads for the listener consumers
+ * (spring.threads.virtual.enabled=true, Java 21 runtime).
+ *
+ * Every SimpleRabbitListenerContainerFactory, the auto-configured one and
+ * batchContainerFactory alike, gets an executor that starts each consumer on
+ * a virtual thread. A consumer still owns its thread for as long as it runs,
+ * but while it waits on Postgres it no longer holds a platform thread, so
+ * spring.rabbitmq.listener.simple.max-concurrency can be raised well past
+ * the core count. The datasource pool then becomes the limit it should be.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public static BeanPostProcessor virtualThreadListenerContainers() {
+        ThreadFactory threads = virtualThreadFactory("rabbit-consumer-");
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleRabbitListenerContainerFactory factory) {
+                    factory.setTaskExecutor(new SimpleAsyncTaskExecutor(threads));
+                    log.info("Listener containers from {} run consumers on virtual threads", beanName);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /** Thread.ofVirtual().name(prefix, 0).factory(), without compiling against Java 21. */
+    static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Method name = builderType.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("spring.threads.virtual.enabled needs a Java 21 runtime, this is Java "
+                    + Runtime.version(), e);
+        }
+    }
+}
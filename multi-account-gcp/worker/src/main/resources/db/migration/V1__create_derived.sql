@@ -0,0 +1,9 @@
+CREATE TABLE IF NOT EXISTS derived (
+  id BIGSERIAL PRIMARY KEY,
+  item_id BIGINT,
+  processed_at TIMESTAMPTZ,
+  note TEXT
+);
+
+-- Hibernate's pooled optimizer reserves 50 ids per nextval call
+ALTER SEQUENCE derived_id_seq INCREMENT BY 50;
@@ -0,0 +1,3 @@
+-- Id of the event that produced the row; redeliveries of the same event are skipped on insert
+ALTER TABLE derived ADD COLUMN IF NOT EXISTS event_id UUID;
+CREATE UNIQUE INDEX IF NOT EXISTS derived_event_id_key ON derived (event_id);
@@ -0,0 +1,3 @@
+-- Trace id from the event headers, and milliseconds from the event's creation in the backend to this row
+ALTER TABLE derived ADD COLUMN IF NOT EXISTS trace_id TEXT;
+ALTER TABLE derived ADD COLUMN IF NOT EXISTS lag_ms BIGINT;
@@ -0,0 +1,43 @@
+package com.example.multiaccount.worker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventLagMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EventLagMetrics metrics = new EventLagMetrics(registry);
+
+    @Test
+    void processingIsOneSamplePerBatch() {
+        metrics.recordProcessing(500, System.nanoTime());
+        metrics.recordProcessing(1, System.nanoTime());
+
+        assertThat(registry.get("worker.event.processing").timer().count()).isEqualTo(2);
+        assertThat(registry.get("worker.event.batch.size").summary().count()).isEqualTo(2);
+        assertThat(registry.get("worker.event.batch.size").summary().totalAmount()).isEqualTo(501);
+        assertThat(registry.get("worker.event.batch.size").summary().max()).isEqualTo(500);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void summaryReportsBatchSizes() {
+        metrics.recordProcessing(10, System.nanoTime());
+        metrics.recordProcessing(30, System.nanoTime());
+
+        Map<String, Object> batchSize = (Map<String, Object>) metrics.summary().get("batchSize");
+        assertThat(batchSize).containsEntry("count", 2L).containsEntry("mean", 20.0).containsEntry("max", 30.0);
+    }
+
+    @Test
+    void lagIsNeverNegativeAndNullWithoutTheHeader() {
+        assertThat(EventLagMetrics.lagMillis(1_000L, 1_250L)).isEqualTo(250L);
+        // Backend clock ahead of ours
+        assertThat(EventLagMetrics.lagMillis(2_000L, 1_000L)).isZero();
+        assertThat(EventLagMetrics.lagMillis(null, 1_000L)).isNull();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.multiaccount.worker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentEventIdsTest {
+
+    @Test
+    void remembersAddedIdsOnly() {
+        RecentEventIds ids = new RecentEventIds(16);
+        UUID seen = UUID.randomUUID();
+
+        ids.add(seen);
+
+        assertThat(ids.contains(seen)).isTrue();
+        assertThat(ids.contains(UUID.randomUUID())).isFalse();
+    }
+
+    @Test
+    void addingTwiceDoesNotUseUpCapacity() {
+        RecentEventIds ids = new RecentEventIds(16);
+        List<UUID> first = randomIds(16);
+        first.forEach(ids::add);
+        // Re-adding must not start a new generation, or the next 16 would push "first" out early
+        first.forEach(ids::add);
+
+        randomIds(16).forEach(ids::add);
+
+        assertThat(first).allMatch(ids::contains);
+    }
+
+    @Test
+    void previousGenerationIsStillRememberedAfterRollover() {
+        RecentEventIds ids = new RecentEventIds(16);
+        List<UUID> first = randomIds(16);
+        first.forEach(ids::add);
+
+        List<UUID> second = randomIds(16);
+        second.forEach(ids::add);
+
+        assertThat(first).allMatch(ids::contains);
+        assertThat(second).allMatch(ids::contains);
+    }
+
+    @Test
+    void secondRolloverDropsTheOldestGeneration() {
+        RecentEventIds ids = new RecentEventIds(16);
+        List<UUID> first = randomIds(16);
+        first.forEach(ids::add);
+        List<UUID> second = randomIds(16);
+        second.forEach(ids::add);
+
+        UUID third = UUID.randomUUID();
+        ids.add(third);
+
+        assertThat(first).noneMatch(ids::contains);
+        assertThat(second).allMatch(ids::contains);
+        assertThat(ids.contains(third)).isTrue();
+    }
+
+    @Test
+    void idsHashingToTheSameSlotAreAllFound() {
+        RecentEventIds ids = new RecentEventIds(16);
+        // A capacity of 16 gets a 32-slot table; collect ids whose fingerprints share a home slot
+        List<UUID> colliding = new ArrayList<>();
+        int target = -1;
+        while (colliding.size() < 8) {
+            UUID id = UUID.randomUUID();
+            long fp = RecentEventIds.fingerprint(id);
+            int slot = (int) (fp ^ (fp >>> 32)) & 31;
+            if (target == -1) {
+                target = slot;
+            }
+            if (slot == target) {
+                colliding.add(id);
+            }
+        }
+
+        colliding.forEach(ids::add);
+
+        assertThat(colliding).allMatch(ids::contains);
+        assertThat(ids.contains(UUID.randomUUID())).isFalse();
+    }
+
+    @Test
+    void fingerprintIsNeverTheEmptySlotMarker() {
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(RecentEventIds.fingerprint(UUID.randomUUID())).isNotZero();
+        }
+        assertThat(RecentEventIds.fingerprint(new UUID(0, 0))).isNotZero();
+    }
+
+    private static List<UUID> randomIds(int count) {
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        return ids;
+    }
+}